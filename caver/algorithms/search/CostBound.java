@@ -0,0 +1,44 @@
+package algorithms.search;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+
+/*
+ * The k least costs of paths found so far, shared by concurrent searches.
+ * A path more expensive than the k-th least cost cannot be among the k
+ * cheapest paths. The bound only decreases, so when all searches are done
+ * the paths not more expensive than the bound are the same whatever the
+ * order in which they were found.
+ */
+class CostBound {
+
+    private int k_;
+    private PriorityQueue<Double> costs_; // max-heap of the k least costs
+    private volatile double limit_ = Double.POSITIVE_INFINITY;
+
+    public CostBound(int k) {
+        k_ = k;
+        costs_ = new PriorityQueue<Double>(Math.max(1, Math.min(k, 1024)),
+                Collections.reverseOrder());
+    }
+
+    public synchronized void add(double cost) {
+        if (k_ <= 0 || limit_ < cost) {
+            return;
+        }
+        costs_.add(cost);
+        if (k_ < costs_.size()) {
+            costs_.poll();
+        }
+        if (k_ == costs_.size()) {
+            limit_ = costs_.peek();
+        }
+    }
+
+    /*
+     * The k-th least cost, infinity until k costs are known.
+     */
+    public double getLimit() {
+        return limit_;
+    }
+}
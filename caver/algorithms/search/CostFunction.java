@@ -17,6 +17,21 @@ public interface CostFunction {
      */
     public double getCost(double r, double l);
 
+    /*
+     * True if integrate should be used instead of sampling of getCost along
+     * segments.
+     */
+    public boolean integrates();
+
+    /*
+     * Integral of getCost(r, 1) along a segment of length l, where r is the
+     * distance to a sphere of radius radius, whose center is in distance
+     * distance from the line of the segment and projects to the point in
+     * distance closest from the start of the segment (may lie outside).
+     */
+    public double integrate(double l, double closest, double distance,
+            double radius);
+
     public void printGraph();
 
     public boolean overflow(double radius);
@@ -2,7 +2,6 @@ package algorithms.search;
 
 import algorithms.clustering.layers.AverageSurface;
 import algorithms.clustering.layers.LayeredTunnels;
-import algorithms.triangulation.VE;
 import algorithms.triangulation.VoronoiDiagram;
 import caver.CalculationSettings;
 import caver.Clock;
@@ -15,9 +14,11 @@ import chemistry.pdb.SnapId;
 import geometry.primitives.Point;
 import geometry.primitives.Sphere;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +29,9 @@ import java.util.logging.Logger;
  */
 public class DijkstraTunnelComputation implements TunnelComputation {
 
+    private static final int CHUNK = 16; // least number of sources of a task
+    private SearchTables tables_; // of the last search from the start
+
     @Override
     /*
      * Identifies tunnels using an algorithm described in CAVER 3.0: A Tool for
@@ -124,87 +128,49 @@ public class DijkstraTunnelComputation implements TunnelComputation {
         Clock.stop("compute tunnels: rest tunnels 1");
         Clock.start("compute tunnels: rest tunnels 2");
 
-        List<List<Integer>> nodeTunnels = new ArrayList<List<Integer>>();
-        List<Double> tunnelDistances = new ArrayList<Double>();
-
         Tunnels all = Tunnels.create(origin, voronoiOrigin, sourceNode, cs);
 
         double ri = proteinR / (cs.getWaypointCount() + 1); // last one is worthless
 
         Printer.println("Waipoint sampling distance: " + ri);
 
-        for (int i = 1; i <= cs.getWaypointCount(); i++) {
-            double r = i * ri;
-            vd.initializeSearchTables();
-
-            Set<Integer> waypoint = tp.dijkstraInBubble(
-                    vd, sourceNode, cs.getProbeRadius(), r);
-
-            for (int waypointI : waypoint) {
-
-                double[] distances = vd.copyDistances();
-                int[] previous = vd.copyPrevious();
-
-                Set<Integer> innerEnds = tp.secondaryDijkstra(vd, waypointI,
-                        cs.getProbeRadius(), distances, previous);
-
-                for (int innerEnd : innerEnds) {
-
-                    Integer outerEnd = tp.finalizingDijkstra(vd, innerEnd,
-                            cs.getProbeRadius(), distances, previous);
-
-                    if (null != outerEnd) {
-                        List<Integer> nodeTunnel = new ArrayList<Integer>();
-
-                        int back = outerEnd;
-                        double w = distances[outerEnd];
-
-                        while (vd.NULL != back) {
-                            nodeTunnel.add(back);
-                            back = previous[back];
-                        }
-
-                        nodeTunnels.add(nodeTunnel);
-                        tunnelDistances.add(w);
-                    }
+        // searches of the rounds run concurrently, tunnels are created and
+        // clustered in the order of rounds, clustering draws from the random
+        // generator of settings
+        final Round[] rounds = new Round[cs.getWaypointCount()];
+        for (int i = 1; i <= rounds.length; i++) {
+            rounds[i - 1] = new Round(cs, vd, sourceNode, i * ri,
+                    bound(cs));
+        }
+        RecursiveAction search = new RecursiveAction() {
 
-                }
+            @Override
+            protected void compute() {
+                invokeAll(rounds);
             }
+        };
+        Clock.start("compute tunnels: waypoint rounds");
+        // calculations of named starting points and probe sweeps run in
+        // tasks of the pool already
+        if (ForkJoinTask.inForkJoinPool()) {
+            search.invoke();
+        } else {
+            cs.getThreadPool().invoke(search);
+        }
+        Clock.stop("compute tunnels: waypoint rounds");
 
-            // process and cluster tunnels - too many for memory
-            Tunnels tunnels = Tunnels.create(origin, voronoiOrigin, sourceNode,
-                    cs);
-            for (int t = 0; t < nodeTunnels.size(); t++) {
-                List<Integer> nodeTunnel = nodeTunnels.get(t);
-
-                if (2 <= nodeTunnel.size()) {
-                    List<VE> segments = new ArrayList<VE>();
-                    for (int j = 0; j < nodeTunnel.size() - 1; j++) {
-                        int a = nodeTunnel.get(j);
-                        int b = nodeTunnel.get(j + 1);
-                        VE as = vd.getSegmentByNodes(a, b);
-                        segments.add(as);
-                    }
-
-                    if (2 < segments.size()) {
-
-                        double cost = tunnelDistances.get(t);
-                        Tunnel tunnel = Tunnel.create(
-                                origin, snapId,
-                                counter.get(), segments, nodeTunnel,
-                                cost,
-                                cs.getShellRadius(),
-                                cs.getProfileTunnelSamplingStep(), cs);
-                        if (null != tunnel) {
-                            tunnels.add(tunnel);
-                        }
-                    }
-                }
-            }
+        if (0 < rounds.length) {
+            tables_ = rounds[rounds.length - 1].tables_;
+        }
 
+        for (int i = 0; i < rounds.length; i++) {
+            PathBuffer paths = rounds[i].paths_;
+            CostBound bound = rounds[i].bound_;
+            rounds[i] = null;
 
-            nodeTunnels.clear();
-            tunnelDistances.clear();
+            // process and cluster tunnels - too many for memory
+            Tunnels tunnels = createTunnels(cs, vd, origin, voronoiOrigin,
+                    sourceNode, snapId, counter, paths, bound);
 
             if (cs.doFrameClustering()) {
 
@@ -254,6 +220,53 @@ public class DijkstraTunnelComputation implements TunnelComputation {
     public Tunnels computeTunnelsBlock(CalculationSettings cs, VoronoiDiagram vd,
             Point origin, SnapId snapId, CaverCounter counter) throws IOException {
 
+        VoronoiDiagramSearches tp = new VoronoiDiagramSearches();
+        int sourceNode = prepareBlock(cs, vd, origin, tp);
+        Point voronoiOrigin = vd.getPoint(sourceNode);
+
+        Clock.start("compute tunnels: rest tunnels 2");
+
+        SearchTables tables = new SearchTables(vd.size());
+        tp.dijkstra(vd, tables, sourceNode, cs.getProbeRadius());
+        tables_ = tables;
+
+        PathBuffer paths = new PathBuffer();
+
+
+        Set<Integer> outerNodes = vd.getOuterNodes();
+        int[] ends = new int[outerNodes.size()];
+        int count = 0;
+        for (int endNode : outerNodes) {
+            if (SearchTables.NULL != tables.getPrevious(endNode)) {
+                // route to this endNode was found
+
+                assert tables.getDistance(endNode) > 0;
+
+                ends[count++] = endNode;
+            }
+        }
+        CostBound bound = bound(cs);
+        searchToSurface(cs, vd, tables, Arrays.copyOf(ends, count), false,
+                bound, paths);
+        Printer.println(paths.size() + " found in first phase.");
+
+        Clock.stop("compute tunnels: rest tunnels 2");
+        Clock.start("compute tunnels: rest tunnels 3");
+
+        Tunnels tunnels = createTunnels(cs, vd, origin, voronoiOrigin,
+                sourceNode, snapId, counter, paths, bound);
+        Printer.println(tunnels.size() + " found in second phase.");
+        Clock.stop("compute tunnels: rest tunnels 3");
+        return tunnels;
+    }
+
+    /*
+     * Finds the node of the start and disables the outer and inner shells of
+     * the diagram, as needed for searches of tunnels to the surface.
+     */
+    static int prepareBlock(CalculationSettings cs, VoronoiDiagram vd,
+            Point origin, VoronoiDiagramSearches tp) throws IOException {
+
         Printer.println("Voronoi nodes:" + vd.countNodes());
 
         Integer sourceNode = vd.getOptimizedOrigin(origin,
@@ -279,8 +292,6 @@ public class DijkstraTunnelComputation implements TunnelComputation {
                     + "probe?");
         }
 
-        VoronoiDiagramSearches tp = new VoronoiDiagramSearches();
-
         double shellRadius;
 
 
@@ -341,83 +352,231 @@ public class DijkstraTunnelComputation implements TunnelComputation {
         Logger.getLogger("caver").log(Level.FINE, "User origin and Voronoi origin are distant {0}", origin.distance(voronoiOrigin));
 
         Clock.stop("compute tunnels: rest tunnels 1");
-        Clock.start("compute tunnels: rest tunnels 2");
-
-        vd.initializeSearchTables();
-        tp.dijkstra(vd, sourceNode, cs.getProbeRadius());
-
-        List<List<Integer>> nodeTunnels = new ArrayList<List<Integer>>();
-        List<Double> tunnelDistances = new ArrayList<Double>();
-
-
-        Set<Integer> outerNodes = vd.getOuterNodes();
-        for (int endNode : outerNodes) {
-            if (vd.NULL != vd.getPrevious(endNode)) {
-                // route to this endNode was found
+        return sourceNode;
+    }
 
-                assert vd.getDistance(endNode) > 0;
+    @Override
+    public SearchTables getSearchTables() {
+        return tables_;
+    }
 
-                double[] distances = vd.copyDistances();
-                int[] previous = vd.copyPrevious();
+    /*
+     * Creates the tunnels of the paths in their order, except the paths
+     * which cannot be among the cheapest tunnels, the paths of less than
+     * three edges and, if duplicate_path_divergence is set, the paths which
+     * are duplicates of cheaper paths.
+     */
+    private static Tunnels createTunnels(CalculationSettings cs,
+            VoronoiDiagram vd, Point origin, Point voronoiOrigin,
+            int sourceNode, SnapId snapId, CaverCounter counter,
+            PathBuffer paths, CostBound bound) {
+        boolean[] created = new boolean[paths.size()];
+        for (int t = 0; t < paths.size(); t++) {
+            created[t] = (null == bound
+                    || paths.getCost(t) <= bound.getLimit())
+                    && 3 < paths.getLength(t); // more than two edges
+        }
+        if (0 < cs.getDuplicatePathDivergence()) {
+            DuplicatePaths duplicates = new DuplicatePaths(vd,
+                    cs.getDuplicatePathDivergence());
+            created = duplicates.select(paths, created);
+            Printer.println(duplicates.getPruned()
+                    + " duplicate paths pruned.", Printer.NORMAL);
+        }
 
-                Integer out = tp.finalizingDijkstra(vd, endNode,
-                        cs.getProbeRadius(), distances, previous);
+        Tunnels tunnels = Tunnels.create(origin, voronoiOrigin, sourceNode, cs);
+        for (int t = 0; t < paths.size(); t++) {
+            if (created[t]) {
+                Tunnel tunnel = Tunnel.create(
+                        origin, snapId,
+                        counter.get(), vd, paths, t,
+                        cs.getShellRadius(),
+                        cs.getProfileTunnelSamplingStep(), cs);
+                if (null != tunnel) {
+                    tunnels.add(tunnel);
+                }
+            }
+        }
+        return tunnels;
+    }
 
-                if (null != out) {
-                    List<Integer> nodeTunnel = new ArrayList<Integer>();
-                    int back = out;
-                    double w = distances[out];
+    /*
+     * Bound of costs of the tunnels of a frame worth creating, null if all
+     * tunnels are created.
+     */
+    private static CostBound bound(CalculationSettings cs) {
+        if (cs.boundedTunnelSearch()) {
+            return new CostBound(cs.getMaxNumberOfTunnels());
+        }
+        return null;
+    }
 
-                    while (vd.NULL != back) {
-                        nodeTunnel.add(back);
-                        back = previous[back];
-                    }
+    /*
+     * Search of a round of waypoints, from the start to the waypoints on the
+     * bubble of the radius and from them to the surface, in its own search
+     * tables.
+     */
+    private class Round extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private CalculationSettings cs_;
+        private VoronoiDiagram vd_;
+        private int sourceNode_;
+        private double radius_;
+        private SearchTables tables_;
+        private CostBound bound_;
+        private PathBuffer paths_ = new PathBuffer();
+
+        public Round(CalculationSettings cs, VoronoiDiagram vd,
+                int sourceNode, double radius, CostBound bound) {
+            cs_ = cs;
+            vd_ = vd;
+            sourceNode_ = sourceNode;
+            radius_ = radius;
+            bound_ = bound;
+        }
 
-                    nodeTunnels.add(nodeTunnel);
-                    tunnelDistances.add(w);
+        @Override
+        protected void compute() {
+            tables_ = new SearchTables(vd_.size());
+            VoronoiDiagramSearches tp = new VoronoiDiagramSearches();
+            Set<Integer> waypoint = tp.dijkstraInBubble(vd_, tables_,
+                    sourceNode_, cs_.getProbeRadius(), radius_);
 
-                }
+            int[] waypoints = new int[waypoint.size()];
+            int count = 0;
+            for (int waypointI : waypoint) {
+                waypoints[count++] = waypointI;
             }
+            searchToSurface(cs_, vd_, tables_, waypoints, true, bound_,
+                    paths_);
         }
-        Printer.println(nodeTunnels.size() + " found in first phase.");
-
-        Clock.stop("compute tunnels: rest tunnels 2");
-        Clock.start("compute tunnels: rest tunnels 3");
-
-        Tunnels tunnels = Tunnels.create(origin, voronoiOrigin, sourceNode, cs);
+    }
 
-        for (int t = 0; t < nodeTunnels.size(); t++) {
+    /*
+     * Finds paths from the sources to the surface by the thread pool, adds
+     * their nodes and costs in the order of sources, so they and the ids of
+     * tunnels do not depend on the scheduling. If secondary, the sources are
+     * waypoints and the paths are finalized from the ends of secondary
+     * searches from them, otherwise the paths are finalized from the sources.
+     * Costs of paths of tunnels are added to the bound, if it is not null.
+     */
+    private void searchToSurface(CalculationSettings cs, VoronoiDiagram vd,
+            SearchTables tables, int[] sources, boolean secondary,
+            CostBound bound, PathBuffer paths) {
+        PathBuffer[] buffers = new PathBuffer[sources.length];
+        int tasks = 4 * cs.getNumberOfThreads();
+        int chunk = Math.max(CHUNK, (sources.length + tasks - 1) / tasks);
+        SurfaceSearch search = new SurfaceSearch(vd, tables, sources,
+                secondary, cs.getProbeRadius(), cs.getShellRadius(), bound,
+                buffers, chunk, 0, sources.length);
+        // a round or the calculation of a named starting point or of a probe
+        // of a sweep runs in a task of the pool already
+        if (ForkJoinTask.inForkJoinPool()) {
+            search.invoke();
+        } else {
+            cs.getThreadPool().invoke(search);
+        }
+        for (PathBuffer b : buffers) {
+            if (null != b) {
+                paths.addAll(b);
+            }
+        }
+    }
 
-            List<Integer> nodeTunnel = nodeTunnels.get(t);
+    /*
+     * Searches from a range of sources, each task with its own queue and
+     * overlay of the search tables. The diagram is only read. Searches from
+     * sources are given up when more expensive than the bound. Searches from
+     * ends of a secondary search share its changes, giving them up would
+     * change the later paths, so they are not bounded.
+     */
+    private static class SurfaceSearch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private VoronoiDiagram vd_;
+        private SearchTables tables_;
+        private int[] sources_;
+        private boolean secondary_;
+        private double minRadius_;
+        private double endR_; // of the edges removed from tunnel ends
+        private CostBound bound_;
+        private PathBuffer[] paths_; // by first source of a task
+        private int chunk_;
+        private int from_;
+        private int to_;
+
+        public SurfaceSearch(VoronoiDiagram vd, SearchTables tables,
+                int[] sources, boolean secondary, double minRadius,
+                double endR, CostBound bound, PathBuffer[] paths, int chunk,
+                int from, int to) {
+            vd_ = vd;
+            tables_ = tables;
+            sources_ = sources;
+            secondary_ = secondary;
+            minRadius_ = minRadius;
+            endR_ = endR;
+            bound_ = bound;
+            paths_ = paths;
+            chunk_ = chunk;
+            from_ = from;
+            to_ = to;
+        }
 
-            if (2 <= nodeTunnel.size()) {
-                List<VE> segments = new ArrayList<VE>();
-                for (int i = 0; i < nodeTunnel.size() - 1; i++) {
-                    int a = nodeTunnel.get(i);
-                    int b = nodeTunnel.get(i + 1);
-                    VE as = vd.getSegmentByNodes(a, b);
-                    segments.add(as);
-                }
+        @Override
+        protected void compute() {
+            if (to_ - from_ <= chunk_) {
+                search();
+            } else {
+                int middle = (from_ + to_) / 2;
+                invokeAll(
+                        new SurfaceSearch(vd_, tables_, sources_, secondary_,
+                        minRadius_, endR_, bound_, paths_, chunk_, from_,
+                        middle),
+                        new SurfaceSearch(vd_, tables_, sources_, secondary_,
+                        minRadius_, endR_, bound_, paths_, chunk_, middle,
+                        to_));
+            }
+        }
 
-                if (2 < segments.size()) {
-                    double cost = tunnelDistances.get(t);
-
-                    Tunnel tunnel = Tunnel.create(
-                            origin, snapId,
-                            counter.get(), segments, nodeTunnel,
-                            cost,
-                            cs.getShellRadius(),
-                            cs.getProfileTunnelSamplingStep(), cs);
-                    if (null != tunnel) {
-                        tunnels.add(tunnel);
+        private void search() {
+            VoronoiDiagramSearches tp = new VoronoiDiagramSearches();
+            SearchOverlay search = new SearchOverlay(tables_);
+            PathBuffer p = new PathBuffer();
+            paths_[from_] = p;
+            for (int i = from_; i < to_; i++) {
+                search.reset();
+                if (secondary_) {
+                    // searches from the waypoint share changes
+                    Set<Integer> innerEnds = tp.secondaryDijkstra(vd_,
+                            sources_[i], minRadius_, search);
+                    for (int innerEnd : innerEnds) {
+                        add(p, tp.finalizingDijkstra(vd_, innerEnd,
+                                minRadius_, search, Double.POSITIVE_INFINITY),
+                                search);
                     }
-
+                } else {
+                    double maxCost = null == bound_
+                            ? Double.POSITIVE_INFINITY : bound_.getLimit();
+                    add(p, tp.finalizingDijkstra(vd_, sources_[i],
+                            minRadius_, search, maxCost), search);
                 }
             }
+        }
 
+        /*
+         * Adds the path to the end, if any, and its cost to the bound if it
+         * is not too short for a tunnel after its wide end is removed.
+         */
+        private void add(PathBuffer p, Integer end, SearchOverlay search) {
+            if (null == end) {
+                return;
+            }
+            p.add(search, end);
+            if (null != bound_ && !Tunnel.isTrimmedAway(vd_, p, p.size() - 1,
+                    endR_)) {
+                bound_.add(search.getDistance(end));
+            }
         }
-        Printer.println(tunnels.size() + " found in second phase.");
-        Clock.stop("compute tunnels: rest tunnels 3");
-        return tunnels;
     }
 }
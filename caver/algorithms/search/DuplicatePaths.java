@@ -0,0 +1,106 @@
+package algorithms.search;
+
+import algorithms.triangulation.VoronoiDiagram;
+import java.util.Arrays;
+
+/*
+ * Cheap removal of paths which would make nearly the same tunnels as
+ * cheaper paths, before the tunnels are created and clustered. Paths are
+ * taken from the cheapest and walked from the start along the nodes of the
+ * kept paths. A path is kept if it continues for at least the minimal
+ * divergence after the last node it shares with them.
+ *
+ * The nodes of the kept paths are a trie only if paths through the same
+ * node share the beginning, as the paths of one search do. Paths of the
+ * finalizing overlays and of waypoint rounds may reach a node by different
+ * beginnings, such a path is measured from its first node off the kept
+ * paths even if it joins them again later.
+ */
+class DuplicatePaths {
+
+    private VoronoiDiagram vd_;
+    private double minDivergence_;
+    private int pruned_;
+
+    public DuplicatePaths(VoronoiDiagram vd, double minDivergence) {
+        vd_ = vd;
+        minDivergence_ = minDivergence;
+    }
+
+    /*
+     * Which of the candidate paths of the buffer are kept.
+     */
+    public boolean[] select(PathBuffer paths, boolean[] candidates) {
+        boolean[] kept = new boolean[paths.size()];
+        int[] order = order(paths, candidates);
+
+        boolean[] onKept = new boolean[vd_.size()]; // nodes of kept paths
+        for (int t : order) {
+            int last = paths.getLength(t) - 1; // the start
+            int leave = last; // first node not on a kept path
+            while (0 <= leave && onKept[paths.getNode(t, leave)]) {
+                leave--;
+            }
+            // measured from the last node shared with the kept paths
+            double length = 0;
+            for (int i = Math.min(leave, last - 1); 0 <= i; i--) {
+                length += vd_.distance(paths.getNode(t, i),
+                        vd_.getPoint(paths.getNode(t, i + 1)));
+            }
+            if (length < minDivergence_) {
+                pruned_++;
+                continue;
+            }
+            kept[t] = true;
+            for (int i = 0; i <= leave; i++) {
+                onKept[paths.getNode(t, i)] = true;
+            }
+        }
+        return kept;
+    }
+
+    /*
+     * Number of paths not kept so far.
+     */
+    public int getPruned() {
+        return pruned_;
+    }
+
+    /*
+     * Candidate paths by cost and then by index, the rank of the cost among
+     * the distinct costs packed with the index, so that primitive longs are
+     * sorted instead of boxed indices.
+     */
+    private static int[] order(PathBuffer paths, boolean[] candidates) {
+        double[] costs = new double[paths.size()];
+        int count = 0;
+        for (int t = 0; t < paths.size(); t++) {
+            if (candidates[t]) {
+                costs[count++] = paths.getCost(t);
+            }
+        }
+        Arrays.sort(costs, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (0 == distinct
+                    || 0 != Double.compare(costs[distinct - 1], costs[i])) {
+                costs[distinct++] = costs[i];
+            }
+        }
+        long[] keys = new long[count];
+        int n = 0;
+        for (int t = 0; t < paths.size(); t++) {
+            if (candidates[t]) {
+                long rank = Arrays.binarySearch(costs, 0, distinct,
+                        paths.getCost(t));
+                keys[n++] = (rank << 32) | t;
+            }
+        }
+        Arrays.sort(keys);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+}
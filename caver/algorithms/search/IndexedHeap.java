@@ -0,0 +1,134 @@
+package algorithms.search;
+
+import java.util.Arrays;
+
+/*
+ * Indexed 4-ary min-heap of items 0..capacity-1 with double keys, supporting
+ * decrease of a key of an item in the heap. Items with equal keys leave in
+ * the order in which they got the key, i.e. first in first out as from the
+ * lists of a sorted map. The arrays are kept by clear(), repeated searches
+ * do not allocate.
+ */
+public class IndexedHeap {
+
+    private static final int ARITY = 4;
+    private static final int NONE = -1;
+    private int[] heap_ = new int[0]; // items, heap_[0] is the minimum
+    private int[] position_ = new int[0]; // in heap_ by item, NONE if absent
+    private double[] key_ = new double[0]; // by item
+    private int[] order_ = new int[0]; // by item, when it got its key
+    private int size_;
+    private int counter_;
+
+    /*
+     * Removes all items and makes room for items 0..capacity-1.
+     */
+    public void clear(int capacity) {
+        for (int i = 0; i < size_; i++) {
+            position_[heap_[i]] = NONE;
+        }
+        size_ = 0;
+        counter_ = 0;
+        if (position_.length < capacity) {
+            heap_ = new int[capacity];
+            position_ = new int[capacity];
+            Arrays.fill(position_, NONE);
+            key_ = new double[capacity];
+            order_ = new int[capacity];
+        }
+    }
+
+    public boolean isEmpty() {
+        return 0 == size_;
+    }
+
+    public int size() {
+        return size_;
+    }
+
+    public boolean contains(int item) {
+        return NONE != position_[item];
+    }
+
+    public double getKey(int item) {
+        return key_[item];
+    }
+
+    /*
+     * Inserts the item or changes the key of the item in the heap.
+     */
+    public void push(int item, double key) {
+        key_[item] = key;
+        order_[item] = counter_++;
+        int i = position_[item];
+        if (NONE == i) {
+            i = size_++;
+            heap_[i] = item;
+            position_[item] = i;
+            up(i);
+        } else {
+            up(i);
+            down(position_[item]);
+        }
+    }
+
+    /*
+     * Removes and returns the item with the least key.
+     */
+    public int pop() {
+        int top = heap_[0];
+        position_[top] = NONE;
+        size_--;
+        if (0 < size_) {
+            heap_[0] = heap_[size_];
+            position_[heap_[0]] = 0;
+            down(0);
+        }
+        return top;
+    }
+
+    private boolean less(int a, int b) {
+        return key_[a] < key_[b]
+                || (key_[a] == key_[b] && order_[a] < order_[b]);
+    }
+
+    private void up(int i) {
+        int item = heap_[i];
+        while (0 < i) {
+            int parent = (i - 1) / ARITY;
+            if (!less(item, heap_[parent])) {
+                break;
+            }
+            heap_[i] = heap_[parent];
+            position_[heap_[i]] = i;
+            i = parent;
+        }
+        heap_[i] = item;
+        position_[item] = i;
+    }
+
+    private void down(int i) {
+        int item = heap_[i];
+        while (true) {
+            int first = ARITY * i + 1;
+            if (size_ <= first) {
+                break;
+            }
+            int least = first;
+            int last = Math.min(first + ARITY, size_);
+            for (int c = first + 1; c < last; c++) {
+                if (less(heap_[c], heap_[least])) {
+                    least = c;
+                }
+            }
+            if (!less(heap_[least], item)) {
+                break;
+            }
+            heap_[i] = heap_[least];
+            position_[heap_[i]] = i;
+            i = least;
+        }
+        heap_[i] = item;
+        position_[item] = i;
+    }
+}
@@ -0,0 +1,99 @@
+package algorithms.search;
+
+import java.util.Arrays;
+
+/*
+ * Paths in a Voronoi diagram from the surface back to the start and their
+ * costs, the nodes of all paths stored one after another in one array, so
+ * that many paths do not make many small objects.
+ */
+public class PathBuffer {
+
+    private int[] nodes_ = new int[64]; // of all paths
+    private int[] offsets_ = new int[5]; // of the paths in nodes_ and the end
+    private double[] costs_ = new double[4];
+    private int size_;
+
+    public int size() {
+        return size_;
+    }
+
+    public void clear() {
+        size_ = 0;
+    }
+
+    /*
+     * Adds the path from the end back to the start of the search.
+     */
+    public void add(SearchOverlay search, int end) {
+        int length = 0;
+        for (int back = end; SearchTables.NULL != back;
+                back = search.getPrevious(back)) {
+            length++;
+        }
+        int offset = begin(length);
+        for (int back = end; SearchTables.NULL != back;
+                back = search.getPrevious(back)) {
+            nodes_[offset++] = back;
+        }
+        end(length, search.getDistance(end));
+    }
+
+    /*
+     * Adds the path given by nodes from the start to the surface, reversed.
+     */
+    public void addReversed(int[] nodes, double cost) {
+        int offset = begin(nodes.length);
+        for (int i = nodes.length - 1; 0 <= i; i--) {
+            nodes_[offset++] = nodes[i];
+        }
+        end(nodes.length, cost);
+    }
+
+    public void addAll(PathBuffer b) {
+        for (int path = 0; path < b.size_; path++) {
+            int length = b.getLength(path);
+            int offset = begin(length);
+            System.arraycopy(b.nodes_, b.offsets_[path], nodes_, offset,
+                    length);
+            end(length, b.costs_[path]);
+        }
+    }
+
+    /*
+     * Number of nodes of the path.
+     */
+    public int getLength(int path) {
+        return offsets_[path + 1] - offsets_[path];
+    }
+
+    /*
+     * The i-th node of the path from the surface.
+     */
+    public int getNode(int path, int i) {
+        return nodes_[offsets_[path] + i];
+    }
+
+    public double getCost(int path) {
+        return costs_[path];
+    }
+
+    private int begin(int length) {
+        if (offsets_.length < size_ + 2) {
+            offsets_ = Arrays.copyOf(offsets_, 2 * (size_ + 2));
+            costs_ = Arrays.copyOf(costs_, 2 * (size_ + 2));
+        }
+        int offset = offsets_[size_];
+        if (nodes_.length < offset + length) {
+            nodes_ = Arrays.copyOf(nodes_,
+                    Math.max(2 * nodes_.length, offset + length));
+        }
+        return offset;
+    }
+
+    private void end(int length, double cost) {
+        costs_[size_] = cost;
+        offsets_[size_ + 1] = offsets_[size_] + length;
+        size_++;
+    }
+}
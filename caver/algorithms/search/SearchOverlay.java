@@ -0,0 +1,57 @@
+package algorithms.search;
+
+import java.util.Arrays;
+
+/*
+ * Distances and previous nodes of searches continuing from the result of a
+ * base search stored in search tables. Only the nodes changed since reset()
+ * are stored here, marked by the number of the reset, so a search costs
+ * only in proportion to the nodes it visits, instead of copying the tables
+ * of the whole diagram.
+ */
+public class SearchOverlay {
+
+    private SearchTables base_;
+    private double[] distances_;
+    private int[] previous_;
+    private int[] version_; // of the entries, current_ if they are valid
+    private int current_ = 1;
+
+    public SearchOverlay(SearchTables base) {
+        base_ = base;
+        distances_ = new double[base.size()];
+        previous_ = new int[base.size()];
+        version_ = new int[base.size()];
+    }
+
+    /*
+     * Discards the changes, the base search is seen again.
+     */
+    public void reset() {
+        current_++;
+        if (Integer.MAX_VALUE == current_) {
+            Arrays.fill(version_, 0);
+            current_ = 1;
+        }
+    }
+
+    public double getDistance(int node) {
+        if (current_ == version_[node]) {
+            return distances_[node];
+        }
+        return base_.getDistance(node);
+    }
+
+    public int getPrevious(int node) {
+        if (current_ == version_[node]) {
+            return previous_[node];
+        }
+        return base_.getPrevious(node);
+    }
+
+    public void set(int node, double distance, int previous) {
+        distances_[node] = distance;
+        previous_[node] = previous;
+        version_[node] = current_;
+    }
+}
@@ -0,0 +1,45 @@
+package algorithms.search;
+
+import java.util.Arrays;
+
+/*
+ * Distances and previous nodes of a search in a Voronoi diagram. Each search
+ * round has its own tables, so the rounds can run concurrently on one
+ * diagram.
+ */
+public class SearchTables {
+
+    public static final int NULL = -1;
+    private double[] distances_;
+    private int[] previous_;
+
+    /*
+     * Tables of n nodes, none of them reached.
+     */
+    public SearchTables(int n) {
+        distances_ = new double[n];
+        Arrays.fill(distances_, Double.MAX_VALUE);
+        previous_ = new int[n];
+        Arrays.fill(previous_, NULL);
+    }
+
+    public int size() {
+        return distances_.length;
+    }
+
+    public void setDistance(int node, double distance) {
+        distances_[node] = distance;
+    }
+
+    public double getDistance(int node) {
+        return distances_[node];
+    }
+
+    public void setPrevious(int node, int previousNode) {
+        previous_[node] = previousNode;
+    }
+
+    public int getPrevious(int node) {
+        return previous_[node];
+    }
+}
@@ -1,6 +1,7 @@
 package algorithms.search;
 
 import caver.Printer;
+import java.util.Arrays;
 
 /*
  * The implementation of cost function described int CAVER 3.0: A Tool for the
@@ -12,6 +13,24 @@ public class TimeCostFunction implements CostFunction {
     double exponent_;
     double maxLimitingRadius_;
     double minRadius_ = 0.1;
+    boolean quadrature_ = true;
+    // nodes and weights of 7-point Gauss-Kronrod rule on [-1, 1] and of the
+    // embedded 3-point Gauss rule
+    private static final double[] KRONROD_NODES = {
+        0.960491268708020283423507092629080,
+        0.774596669241483377035853079956480,
+        0.434243749346802558002071502844628,
+        0.0};
+    private static final double[] KRONROD_WEIGHTS = {
+        0.104656226026467265193823857192073,
+        0.268488089868333440728569280666710,
+        0.401397414775962222905051818618432,
+        0.450916538658474142345110087045571};
+    private static final double[] GAUSS_WEIGHTS = {
+        0.555555555555555555555555555555556,
+        0.888888888888888888888888888888889};
+    private static final double TOLERANCE = 1e-6;
+    private static final int MAX_DEPTH = 12;
 
     public TimeCostFunction(double radiusDecrease,
             double timeIncrease, double maxLimitingRadius, double minRadius) {
@@ -53,6 +72,113 @@ public class TimeCostFunction implements CostFunction {
         return length * t;
     }
 
+    /*
+     * Switches between integrate and sampling of segments (false).
+     */
+    public void setQuadrature(boolean quadrature) {
+        quadrature_ = quadrature;
+    }
+
+    @Override
+    public boolean integrates() {
+        return quadrature_;
+    }
+
+    /*
+     * The segment is split at the points where the radius crosses
+     * minRadius_ or maxLimitingRadius_, getTime is constant or smooth
+     * between them. The integrand peaks at the point closest to the sphere,
+     * u - closest = width * tan(phi) is substituted, where width is the
+     * distance from the closest point in which the radius grows from its
+     * minimum d to 2d, to make the integrand nearly constant. Each piece is
+     * integrated by the 7-point Kronrod rule and bisected until its
+     * difference from the embedded 3-point Gauss rule, an upper estimate of
+     * the error of the Kronrod rule for smooth integrands, is at most 1e-6
+     * of the result.
+     */
+    @Override
+    public double integrate(double l, double closest, double distance,
+            double radius) {
+        if (l <= 0) {
+            return 0;
+        }
+        double[] cuts = new double[8];
+        int count = 0;
+        cuts[count++] = 0;
+        cuts[count++] = l;
+        double[] limits = {0, minRadius_, maxLimitingRadius_};
+        for (double limit : limits) {
+            double d = radius + limit;
+            if (distance < d) {
+                double w = Math.sqrt(d * d - distance * distance);
+                if (0 < closest - w && closest - w < l) {
+                    cuts[count++] = closest - w;
+                }
+                if (0 < closest + w && closest + w < l) {
+                    cuts[count++] = closest + w;
+                }
+            }
+        }
+        Arrays.sort(cuts, 0, count);
+
+        double d = Math.max(Math.max(distance - radius, minRadius_), 1e-6);
+        double width = Math.sqrt(d * (2 * radius + 3 * d));
+        double sum = 0;
+        for (int i = 0; i + 1 < count; i++) {
+            double x = (cuts[i] + cuts[i + 1]) / 2 - closest;
+            double r = Math.sqrt(distance * distance + x * x) - radius;
+            if (r <= minRadius_ || maxLimitingRadius_ <= r) { // constant
+                sum += (cuts[i + 1] - cuts[i]) * getTime(r);
+            } else {
+                sum += integrate(Math.atan((cuts[i] - closest) / width),
+                        Math.atan((cuts[i + 1] - closest) / width),
+                        width, distance, radius, 0);
+            }
+        }
+        return sum;
+    }
+
+    private double integrate(double from, double to, double width,
+            double distance, double radius, int depth) {
+        double half = (to - from) / 2;
+        double center = from + half;
+        double f = getTime(center, width, distance, radius);
+        double kronrod = KRONROD_WEIGHTS[3] * f;
+        double gauss = GAUSS_WEIGHTS[1] * f;
+        for (int i = 0; i < 3; i++) {
+            double phi = half * KRONROD_NODES[i];
+            f = getTime(center - phi, width, distance, radius)
+                    + getTime(center + phi, width, distance, radius);
+            kronrod += KRONROD_WEIGHTS[i] * f;
+            if (1 == i) {
+                gauss += GAUSS_WEIGHTS[0] * f;
+            }
+        }
+        kronrod *= half;
+        gauss *= half;
+        if (Math.abs(kronrod - gauss) <= TOLERANCE * Math.abs(kronrod)
+                || MAX_DEPTH <= depth) {
+            return kronrod;
+        }
+        return integrate(from, center, width, distance, radius, depth + 1)
+                + integrate(center, to, width, distance, radius, depth + 1);
+    }
+
+    /*
+     * Time in the point given by the angle phi multiplied by the derivative
+     * of the substitution.
+     */
+    private double getTime(double phi, double width, double distance,
+            double radius) {
+        double tan = Math.tan(phi);
+        double x = width * tan;
+        double r = Math.sqrt(distance * distance + x * x) - radius;
+        if (r < 0) {
+            r = 0;
+        }
+        return getTime(r) * width * (1 + tan * tan);
+    }
+
     @Override
     public boolean overflow(double radius) {
         if (Double.MAX_VALUE / 1000 < getTime(radius)) {
@@ -17,4 +17,10 @@ public interface TunnelComputation {
 
     public Tunnels computeTunnelsBlock(CalculationSettings cs, VoronoiDiagram vd,
             Point origin, SnapId snapId, CaverCounter counter) throws IOException;
+
+    /*
+     * Tables of the last search from the start, i.e. the tree of the
+     * cheapest paths, null before tunnels are computed.
+     */
+    public SearchTables getSearchTables();
 }
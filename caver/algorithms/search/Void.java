@@ -1,29 +1,30 @@
 package algorithms.search;
 
+import algorithms.triangulation.VoronoiDiagram;
 import geometry.primitives.Point;
-import geometry.primitives.Sphere;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
- * The class void represents any space not occupied by atoms. Typically 
+ * The class void represents any space not occupied by atoms. Typically
  * a void or a pocket.
  */
 public class Void implements Comparable<Void> {
 
-    private double rMax = Double.NEGATIVE_INFINITY;
+    private VoronoiDiagram vd_;
+    private int[] nodes_; // nodes whose spheres make up the volume of the void
+    private double rMax;
     private Point pMax;
-    private Double volume = null;
-    private Set<Sphere> spheres = new HashSet<Sphere>(); 
-    // spheres making up the volume of the void
+    private double volume;
 
-    public void add(Sphere s) {
-        double r = s.getR();
-        if (rMax < r) {
-            rMax = r;
-            pMax = s.getS();
-        }
-        spheres.add(s);
+    /*
+     * Volume is guessed as the sum of cubes of the radii of the spheres, the
+     * node with the greatest sphere is maxNode.
+     */
+    public Void(VoronoiDiagram vd, int[] nodes, double volume, int maxNode) {
+        vd_ = vd;
+        nodes_ = nodes;
+        this.volume = volume;
+        rMax = vd.getVertexRadius(maxNode);
+        pMax = vd.getPoint(maxNode);
     }
 
     public Point getMaxPoint() {
@@ -32,25 +33,18 @@ public class Void implements Comparable<Void> {
 
     @Override
     public int compareTo(Void v) {
-        return -new Double(guessVolume()).compareTo(v.guessVolume());
+        return -Double.compare(guessVolume(), v.guessVolume());
     }
 
     public double getR() {
         return rMax;
     }
 
-    public Set<Sphere> getSpheres() {
-        return spheres;
+    public int[] getNodes() {
+        return nodes_;
     }
 
     public double guessVolume() {
-        if (null == volume) {
-            volume = 0.0;
-            for (Sphere s : spheres) {
-                double r = s.getR();
-                volume += r * r * r;
-            }
-        }
         return volume;
     }
 
@@ -59,29 +53,30 @@ public class Void implements Comparable<Void> {
     }
 
     public Point getClosest(Point p, double minR) {
-        Point closest = null;
+        int closest = SearchTables.NULL;
         double dist = Double.MAX_VALUE;
-        for (Sphere s : spheres) {
-            if (minR <= s.getR()) {
+        for (int node : nodes_) {
+            if (minR <= vd_.getVertexRadius(node)) {
 
-                double d = p.distance(s.getS());
+                double d = vd_.distance(node, p);
                 if (d < dist) {
                     dist = d;
-                    closest = s.getS();
+                    closest = node;
                 }
             }
         }
-        if (null == closest) {
+        if (SearchTables.NULL == closest) {
             dist = Double.MAX_VALUE;
-            for (Sphere s : spheres) {
-                double d = p.distance(s.getS());
+            for (int node : nodes_) {
+                double d = vd_.distance(node, p);
                 if (d < dist) {
                     dist = d;
-                    closest = s.getS();
+                    closest = node;
                 }
             }
         }
 
-        return closest;
+        return SearchTables.NULL == closest ? null
+                : vd_.getPoint(closest);
     }
 }
@@ -10,6 +10,10 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  *
@@ -17,6 +21,7 @@ import java.util.*;
  */
 public class Voids {
 
+    private static final double MIN_R = 1.4; // of spheres and gates of voids
     VoronoiDiagram vd_;
     boolean[] visited_;
     List<Void> voids;
@@ -25,86 +30,116 @@ public class Voids {
         vd_ = vd;
     }
 
-    public void run() {
+    /*
+     * Nodes not reached from outer space by descending spheres are joined by
+     * gates at least MIN_R wide into voids, those with a sphere of radius
+     * MIN_R are kept. The edges are joined in parallel by a concurrent
+     * union-find, the members, volumes and greatest spheres of the voids are
+     * collected in one pass.
+     */
+    public void run(ForkJoinPool pool) {
+        int n = vd_.size();
+        visited_ = new boolean[n];
         {
-            Set<Integer> outer = vd_.getOuterNodes();
-
-            LinkedList<Integer> fifo = new LinkedList<Integer>(outer);
-
-            visited_ = new boolean[vd_.size()];
-
-            while (!fifo.isEmpty()) {
-                int node = fifo.poll();
+            int[] stack = new int[n];
+            int size = 0;
+            for (int node : vd_.getOuterNodes()) {
                 visited_[node] = true;
+                stack[size++] = node;
+            }
+
+            while (0 < size) {
+                int node = stack[--size];
+                double rNode = vd_.getVertexRadius(node);
 
                 for (int i = 0; i < 4; i++) {
                     int neighbor = vd_.getNeighbour(node, i);
-                    if (!vd_.valid(neighbor)) {
+                    if (!vd_.valid(neighbor) || visited_[neighbor]) {
                         continue;
                     }
 
-                    double rNode = vd_.getSphere(node).getR();
-                    double rNeighbor = vd_.getSphere(neighbor).getR();
-
-
-                    if (!visited_[neighbor]
-                            && (rNeighbor < rNode || 3 <= rNeighbor)) {// TODO outer shell
-                        fifo.push(neighbor);
-
+                    double rNeighbor = vd_.getVertexRadius(neighbor);
+                    if (rNeighbor < rNode || 3 <= rNeighbor) {// TODO outer shell
+                        visited_[neighbor] = true;
+                        stack[size++] = neighbor;
                     }
                 }
             }
         }
 
-        voids = new ArrayList<Void>();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int u = 0; u < n; u++) {
+            parent.set(u, u);
+        }
+        Join join = new Join(parent, 0, n);
+        if (ForkJoinTask.inForkJoinPool()) {
+            join.invoke();
+        } else {
+            pool.invoke(join);
+        }
 
-        for (int u = 0; u < vd_.size(); u++) {
+        // roots are the least nodes of voids, so voids are ordered by them
+        int[] roots = new int[n];
+        int[] index = new int[n]; // of void by its root, then its next member
+        int[] count = new int[n + 1];
+        int[] maxNode = new int[n];
+        double[] volume = new double[n];
+        boolean[] deep = new boolean[n]; // has a sphere of radius MIN_R
+        int m = 0;
+        for (int u = 0; u < n; u++) {
             if (visited_[u]) {
                 continue;
             }
-            double r = vd_.getSphere(u).getR();
-            if (r < 1.4) {
-                continue;
+            int root = find(parent, u);
+            roots[u] = root;
+            if (root == u) {
+                index[u] = m++;
+                maxNode[u] = u;
             }
-
-            LinkedList<Integer> fifo = new LinkedList<Integer>();
-            Void space = new Void();
-            fifo.push(u);
-            visited_[u] = true;
-            while (!fifo.isEmpty()) {
-                int v = fifo.poll();
-                space.add(vd_.getSphere(v));
-
-                for (int i = 0; i < 4; i++) {
-                    int w = vd_.getNeighbour(v, i);
-                    if (!vd_.valid(w)) {
-                        continue;
-                    }
-                    if (!visited_[w] && 1.4 <= vd_.getBottleneckByGate(v, i)) {
-                        fifo.push(w);
-                        visited_[w] = true;
-                    }
-
-                }
-
+            int v = index[root];
+            count[v + 1]++;
+            double r = vd_.getVertexRadius(u);
+            volume[v] += r * r * r;
+            if (vd_.getVertexRadius(maxNode[root]) < r) {
+                maxNode[root] = u;
             }
-            voids.add(space);
+            if (MIN_R <= r) {
+                deep[v] = true;
+            }
+        }
+        for (int v = 0; v < m; v++) {
+            count[v + 1] += count[v];
+        }
+        int[] members = new int[count[m]];
+        int[] next = Arrays.copyOf(count, m);
+        for (int u = 0; u < n; u++) {
+            if (!visited_[u]) {
+                members[next[index[roots[u]]]++] = u;
+            }
+        }
 
+        voids = new ArrayList<Void>();
+        for (int u = 0; u < n; u++) {
+            if (visited_[u] || roots[u] != u || !deep[index[u]]) {
+                continue;
+            }
+            int v = index[u];
+            voids.add(new Void(vd_, Arrays.copyOfRange(members, count[v],
+                    count[v + 1]), volume[v], maxNode[u]));
         }
 
         Collections.sort(voids);
-
     }
 
     public void save(CalculationSettings cs) {
         int voidId = 1;
         for (Void v : voids) {
             File file = cs.getVoidsFile(voidId++);
-            Set<Sphere> spheres = v.getSpheres();
             int serial = 1;
             try {
                 BufferedWriter bw = new BufferedWriter(new FileWriter(file));
-                for (Sphere s : spheres) {
+                for (int node : v.getNodes()) {
+                    Sphere s = vd_.getSphere(node);
                     if (0.9 <= s.getR()) {
                         Point p = s.getS();
 
@@ -147,4 +182,84 @@ public class Voids {
             throw new RuntimeException(e);
         }
     }
+
+    /*
+     * Joins the nodes from..to-1 with their neighbours through gates at
+     * least MIN_R wide.
+     */
+    private class Join extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int CHUNK = 4096;
+        private AtomicIntegerArray parent_;
+        private int from_;
+        private int to_;
+
+        public Join(AtomicIntegerArray parent, int from, int to) {
+            parent_ = parent;
+            from_ = from;
+            to_ = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to_ - from_ <= CHUNK) {
+                for (int u = from_; u < to_; u++) {
+                    if (visited_[u]) {
+                        continue;
+                    }
+                    for (int i = 0; i < 4; i++) {
+                        int w = vd_.getNeighbour(u, i);
+                        if (vd_.valid(w) && !visited_[w]
+                                && MIN_R <= vd_.getBottleneckByGate(u, i)) {
+                            union(parent_, u, w);
+                        }
+                    }
+                }
+            } else {
+                int middle = (from_ + to_) / 2;
+                invokeAll(new Join(parent_, from_, middle),
+                        new Join(parent_, middle, to_));
+            }
+        }
+    }
+
+    /*
+     * Root of the set of x, halving the path to it.
+     */
+    private static int find(AtomicIntegerArray parent, int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int g = parent.get(p);
+            if (p != g) {
+                parent.compareAndSet(x, p, g);
+            }
+            x = g;
+        }
+    }
+
+    /*
+     * Joins the sets of a and b, the greater root is linked to the lesser,
+     * so the root of a set is its least member.
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b) {
+                return;
+            }
+            if (a < b) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if (parent.compareAndSet(a, a, b)) {
+                return;
+            }
+        }
+    }
 }
@@ -10,13 +10,8 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +21,8 @@ import java.util.logging.Logger;
  */
 public class VoronoiDiagramSearches {
 
+    private IndexedHeap queue_ = new IndexedHeap(); // reused by searches
+
     /*
      * Disables all nodes accessible from outside. Outside is defined as set of
      * nodes with cardinality lower than 4.
@@ -33,7 +30,10 @@ public class VoronoiDiagramSearches {
     public void markOuterShellNodes(VoronoiDiagram vd, double shellRadius,
             Point origin, double depth, Sphere originZone) {
         // Breadth-first search of space reachable by spherical probe with shellRadius_
-        LinkedList<Integer> fifo = new LinkedList<Integer>();
+        // nodes are disabled when queued, so each is queued once
+        int[] fifo = new int[vd.size()];
+        int head = 0;
+        int tail = 0;
 
         Set<Integer> convexBorder = vd.getOuterNodes();
 
@@ -41,12 +41,13 @@ public class VoronoiDiagramSearches {
                 convexBorder.size());
 
         for (int i : convexBorder) {
-            fifo.push(i);
+            vd.disable(i);
+            fifo[tail++] = i;
         }
         int counter = 0;
-        while (!fifo.isEmpty()) {
-            int node = fifo.poll();
-            vd.disable(node); // removing all nodes accessible from outer space
+        while (head < tail) {
+            int node = fifo[head++];
+            // removing all nodes accessible from outer space
             vd.makeOuter(node);
             counter++;
             for (int i = 0; i < 4; i++) {
@@ -56,7 +57,8 @@ public class VoronoiDiagramSearches {
                         && !vd.disabled(neighbour)) {
                     Point v = vd.getPoint(neighbour);
                     if (0 < originZone.distance(v)) {
-                        fifo.push(neighbour);
+                        vd.disable(neighbour);
+                        fifo[tail++] = neighbour;
                     }
                 }
             }
@@ -101,20 +103,22 @@ public class VoronoiDiagramSearches {
 
         }
 
-        Set<Integer> inner = new HashSet<Integer>();
+        // One queue for searches from all outer nodes, nodes are disabled when
+        // queued, so each is queued once. Depth is measured from the outer
+        // node the search started in, a node disabled by a search is not
+        // passed by the searches from the following outer nodes, so they run
+        // in the order of outer nodes.
+        int[] fifo = new int[vd.size()];
+        int head = 0;
+        int tail = 0;
 
         for (int o : outer) {
-            LinkedList<Integer> fifo = new LinkedList<Integer>();
-            fifo.push(o);
+            fifo[tail++] = o;
             Sphere s = vd.getSphere(o);
 
-            while (!fifo.isEmpty()) {
+            while (head < tail) {
 
-                int t = fifo.poll();
-                vd.disable(t);
-                if (saveSurface) {
-                    inner.add(t);
-                }
+                int t = fifo[head++];
                 for (int i = 0; i < 4; i++) {
                     int u = vd.getNeighbour(t, i);
                     if (!vd.disabled(u)) {
@@ -125,7 +129,8 @@ public class VoronoiDiagramSearches {
                             // under outer space
 
                             if (0 < originZone.distance(vd.getPoint(u))) {
-                                fifo.push(u);
+                                vd.disable(u);
+                                fifo[tail++] = u;
                             }
                         }
                     }
@@ -162,46 +167,34 @@ public class VoronoiDiagramSearches {
     /*
      * Search paths in vd from sourceNode that are wider than minRadius.
      */
-    public void dijkstra(VoronoiDiagram vd, int sourceNode, double minRadius) {
+    public void dijkstra(VoronoiDiagram vd, SearchTables tables,
+            int sourceNode, double minRadius) {
         Clock.start("dijkstra");
         //long time1 = new Date().getTime();
         int operations = 0;
         int visited = 0;
-        vd.setDistance(sourceNode, 0);
-        SortedMap<Double, List<Integer>> q =
-                new TreeMap<Double, List<Integer>>();
-        q.put(0.0, new ArrayList<Integer>());
-        q.get(0.0).add(sourceNode);
+        tables.setDistance(sourceNode, 0);
+        IndexedHeap q = queue_;
+        q.clear(vd.size());
+        q.push(sourceNode, 0);
 
         while (!q.isEmpty()) {
-            List<Integer> list = q.get(q.firstKey());
-            if (list.isEmpty()) {
-                break;
-            }
-            Integer u = list.iterator().next(); // TODO remove here
-            if (1 == list.size()) {
-                q.remove(q.firstKey());
-            } else {
-                list.remove(u);
-            }
+            int u = q.pop();
             for (int i = 0; i < 4; i++) {
 
                 int v = vd.getNeighbour(u, i);
 
                 if (!vd.disabled(v) && minRadius
                         <= vd.getBottleneckByGate(u, i)) {
-                    double alt = vd.getDistance(u) + vd.getWeight(u, i);
+                    double alt = tables.getDistance(u) + vd.getWeight(u, i);
 
-                    if (alt < vd.getDistance(v)) {
+                    if (alt < tables.getDistance(v)) {
                         operations++;
-                        vd.setDistance(v, alt);
+                        tables.setDistance(v, alt);
                         visited++;
-                        vd.setPrevious(v, u);
+                        tables.setPrevious(v, u);
 
-                        if (!q.containsKey(alt)) {
-                            q.put(alt, new ArrayList<Integer>());
-                        }
-                        q.get(alt).add(v);
+                        q.push(v, alt);
                     }
 
                 }
@@ -214,51 +207,41 @@ public class VoronoiDiagramSearches {
 
     /*
      * Finds shortes path through disabled nodes. Just to provide end of
-     * tunnels, i.e. their parts on the surface.
+     * tunnels, i.e. their parts on the surface. Gives up once the paths
+     * become more expensive than maxCost.
      */
     public Integer finalizingDijkstra(VoronoiDiagram vd, int sourceNode,
-            double minRadius, double[] distances, int[] previous) {
+            double minRadius, SearchOverlay search, double maxCost) {
 
         int operations = 0;
         int visited = 0;
-        SortedMap<Double, List<Integer>> q =
-                new TreeMap<Double, List<Integer>>();
-        double sourceDistance = distances[sourceNode];
-        q.put(sourceDistance, new ArrayList<Integer>());
-        q.get(sourceDistance).add(sourceNode);
+        IndexedHeap q = queue_;
+        q.clear(vd.size());
+        q.push(sourceNode, search.getDistance(sourceNode));
 
         while (!q.isEmpty()) {
-            List<Integer> list = q.get(q.firstKey());
-            if (list.isEmpty()) {
-                break;
+            int u = q.pop();
+
+            if (maxCost < search.getDistance(u)) {
+                return null;
             }
-            Integer u = list.iterator().next();
 
             if (vd.isOuter(u)) {
                 return u;
             }
 
-            if (1 == list.size()) {
-                q.remove(q.firstKey());
-            } else {
-                list.remove(u);
-            }
             for (int i = 0; i < 4; i++) {
 
                 int v = vd.getNeighbour(u, i);
                 // we want to go only through disabled, i.e. surface TODO rename
                 if (vd.disabled(v)
                         && minRadius <= vd.getBottleneckByGate(u, i)) {
-                    double alt = distances[u] + vd.getWeight(u, i);
-                    if (alt < distances[v]) {
+                    double alt = search.getDistance(u) + vd.getWeight(u, i);
+                    if (alt < search.getDistance(v)) {
                         operations++;
-                        distances[v] = alt;
+                        search.set(v, alt, u);
                         visited++;
-                        previous[v] = u;
-                        if (!q.containsKey(alt)) {
-                            q.put(alt, new ArrayList<Integer>());
-                        }
-                        q.get(alt).add(v);
+                        q.push(v, alt);
                     }
 
                 }
@@ -268,12 +251,21 @@ public class VoronoiDiagramSearches {
     }
 
     /*
-     * Runs Dijkstra's algorithm just to learn the width of the widest path from
-     * sourceNode to surface.
+     * Width of the widest path from sourceNode to surface, at least minRadius.
+     * Answered by the widest paths of the diagram, Dijkstra's algorithm is run
+     * only for a node on border, whose paths may continue through border.
      */
     public double dijkstraGetBottleneck(VoronoiDiagram vd,
             int sourceNode, double minRadius) {
         Clock.start("dijkstra get bottleneck");
+        if (!vd.isOnBorder(sourceNode)) {
+            // the widest path is not narrower than minRadius anywhere if it
+            // is not narrower in its bottleneck
+            double bottleneck = Math.max(minRadius,
+                    vd.getHullBottleneck(sourceNode));
+            Clock.stop("dijkstra get bottleneck");
+            return bottleneck;
+        }
         double bottleneck = minRadius;
         int operations = 0;
         int visited = 0;
@@ -281,22 +273,13 @@ public class VoronoiDiagramSearches {
         // node [i] is reacheble by path with bottleneck bottlenecks[i]
         double[] bottlenecks = new double[vd.size()];
         bottlenecks[sourceNode] = Double.MAX_VALUE;
-        SortedMap<Double, List<Integer>> q =
-                new TreeMap<Double, List<Integer>>();
-        q.put(Double.MAX_VALUE, new ArrayList<Integer>());
-        q.get(Double.MAX_VALUE).add(sourceNode);
+        // widest first, keys are negated bottlenecks
+        IndexedHeap q = queue_;
+        q.clear(vd.size());
+        q.push(sourceNode, -Double.MAX_VALUE);
 
         while (!q.isEmpty()) {
-            List<Integer> list = q.get(q.lastKey());
-            if (list.isEmpty()) {
-                break;
-            }
-            Integer u = list.iterator().next();
-            if (1 == list.size()) {
-                q.remove(q.lastKey());
-            } else {
-                list.remove(u);
-            }
+            int u = q.pop();
             for (int i = 0; i < 4; i++) {
 
                 int v = vd.getNeighbour(u, i);
@@ -319,10 +302,7 @@ public class VoronoiDiagramSearches {
                                 bottleneck = alt;
                             }
                         } else { // continue search
-                            if (!q.containsKey(alt)) {
-                                q.put(alt, new ArrayList<Integer>());
-                            }
-                            q.get(alt).add(v);
+                            q.push(v, -alt);
                         }
                     }
 
@@ -360,34 +340,25 @@ public class VoronoiDiagramSearches {
 
     /*
      * Finds the cheapest paths from sourceNode to a node outside of sphere of
-     * center source and radius bubbleRadius.
+     * center source and radius bubbleRadius. Runs in concurrent rounds, it is
+     * timed by the caller.
      */
-    public Set<Integer> dijkstraInBubble(VoronoiDiagram vd, int sourceNode,
-            double minRadius, double bubbleRadius) {
+    public Set<Integer> dijkstraInBubble(VoronoiDiagram vd,
+            SearchTables tables, int sourceNode, double minRadius,
+            double bubbleRadius) {
 
         Point source = vd.getPoint(sourceNode);
 
-        Clock.start("dijkstra");
         Set<Integer> ends = new HashSet<Integer>();
         int operations = 0;
         int visited = 0;
-        vd.setDistance(sourceNode, 0);
-        SortedMap<Double, List<Integer>> q =
-                new TreeMap<Double, List<Integer>>();
-        q.put(0.0, new ArrayList<Integer>());
-        q.get(0.0).add(sourceNode);
+        tables.setDistance(sourceNode, 0);
+        IndexedHeap q = queue_;
+        q.clear(vd.size());
+        q.push(sourceNode, 0);
 
         while (!q.isEmpty()) {
-            List<Integer> list = q.get(q.firstKey());
-            if (list.isEmpty()) {
-                break;
-            }
-            Integer u = list.iterator().next();
-            if (1 == list.size()) {
-                q.remove(q.firstKey());
-            } else {
-                list.remove(u);
-            }
+            int u = q.pop();
             for (int i = 0; i < 4; i++) {
 
                 int v = vd.getNeighbour(u, i);
@@ -400,22 +371,19 @@ public class VoronoiDiagramSearches {
                 boolean outer = vd.isOuter(v) || vd.disabled(v);
 
                 if (minRadius <= vd.getBottleneckByGate(u, i)) {
-                    double alt = vd.getDistance(u) + vd.getWeight(u, i);
+                    double alt = tables.getDistance(u) + vd.getWeight(u, i);
 
-                    if (alt < vd.getDistance(v)) {
+                    if (alt < tables.getDistance(v)) {
                         operations++;
-                        vd.setDistance(v, alt);
+                        tables.setDistance(v, alt);
                         visited++;
-                        vd.setPrevious(v, u);
+                        tables.setPrevious(v, u);
 
                         if (outer || bubbleRadius
-                                < vd.getPoint(v).distance(source)) {
+                                < vd.distance(v, source)) {
                             ends.add(v);
                         } else {
-                            if (!q.containsKey(alt)) {
-                                q.put(alt, new ArrayList<Integer>());
-                            }
-                            q.get(alt).add(v);
+                            q.push(v, alt);
                         }
                     }
 
@@ -423,7 +391,6 @@ public class VoronoiDiagramSearches {
             }
         }
 
-        Clock.stop("dijkstra");
         return ends;
     }
 
@@ -431,7 +398,7 @@ public class VoronoiDiagramSearches {
      * Second, prolonging, phase of the tunnel identification algorithm.
      */
     public Set<Integer> secondaryDijkstra(VoronoiDiagram vd, int sourceNode,
-            double minRadius, double[] distances, int[] previous) {
+            double minRadius, SearchOverlay search) {
 
         HashSet<Integer> ends = new HashSet<Integer>();
         if (vd.isOuter(sourceNode)) {
@@ -440,43 +407,28 @@ public class VoronoiDiagramSearches {
         int operations = 0;
         int visited = 0;
 
-        SortedMap<Double, List<Integer>> q =
-                new TreeMap<Double, List<Integer>>();
-        double sourceDistance = distances[sourceNode];
-        q.put(sourceDistance, new ArrayList<Integer>());
-        q.get(sourceDistance).add(sourceNode);
+        IndexedHeap q = queue_;
+        q.clear(vd.size());
+        q.push(sourceNode, search.getDistance(sourceNode));
 
         while (!q.isEmpty()) {
-            List<Integer> list = q.get(q.firstKey());
-            if (list.isEmpty()) {
-                break;
-            }
-            Integer u = list.iterator().next();
+            int u = q.pop();
 
-            if (1 == list.size()) {
-                q.remove(q.firstKey());
-            } else {
-                list.remove(u);
-            }
             for (int i = 0; i < 4; i++) {
 
                 int v = vd.getNeighbour(u, i);
                 if (minRadius <= vd.getBottleneckByGate(u, i)) {
-                    double alt = distances[u] + vd.getWeight(u, i);
-                    if (alt < distances[v]) {
+                    double alt = search.getDistance(u) + vd.getWeight(u, i);
+                    if (alt < search.getDistance(v)) {
                         operations++;
-                        distances[v] = alt;
+                        search.set(v, alt, u);
                         visited++;
-                        previous[v] = u;
 
                         boolean outer = vd.isOuter(v) || vd.disabled(v);
                         if (outer) {
                             ends.add(v);
                         } else {
-                            if (!q.containsKey(alt)) {
-                                q.put(alt, new ArrayList<Integer>());
-                            }
-                            q.get(alt).add(v);
+                            q.push(v, alt);
                         }
                     }
 
@@ -0,0 +1,449 @@
+package algorithms.search;
+
+import algorithms.triangulation.VoronoiDiagram;
+import caver.CalculationSettings;
+import caver.Clock;
+import caver.Printer;
+import caver.tunnels.Tunnel;
+import caver.tunnels.Tunnels;
+import caver.ui.CalculationException;
+import caver.util.CaverCounter;
+import chemistry.pdb.SnapId;
+import geometry.primitives.Point;
+import geometry.primitives.Sphere;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Identifies tunnels as the cheapest loopless paths from the starting point
+ * to the surface, enumerated by Yen's algorithm. Each further path is the
+ * cheapest deviation (spur path) from a node of a path found before, which
+ * avoids the nodes of the path before the deviation and the next nodes of
+ * the paths found before with the same beginning. Only nodes from the one
+ * the path deviated at on are tried (Lawler). As in
+ * DijkstraTunnelComputation, paths pass the nodes inside of the shells and
+ * then only the nodes of the shells, until they reach a node bordering
+ * outer space, all such nodes are one target.
+ *
+ * With min_path_divergence, paths which are shorter out of a cheaper
+ * tunnel are not made into tunnels, and their deviations are tried only
+ * from the nodes out of the tunnels. This misses some tunnels, but without
+ * it the number of paths which differ by small detours grows exponentially
+ * with their cost.
+ */
+public class YenTunnelComputation implements TunnelComputation {
+
+    private static final int PATHS_PER_TUNNEL = 20; // most paths enumerated
+    private VoronoiDiagram vd_;
+    private double minRadius_;
+    private int sourceNode_;
+    private SearchTables tables_;
+    private IndexedHeap queue_ = new IndexedHeap();
+    private SearchOverlay search_;
+    private int[] removed_; // node is removed if removed_[node] == version_
+    private int[] blocked_; // next node from spur node blocked if == version_
+    private int version_;
+    private int[][] coveredBy_; // accepted paths with a sphere over node
+    private int[] coveredCount_;
+    private int[] tested_ = new int[0]; // accepted path tested if version_
+    private PathBuffer paths_ = new PathBuffer(); // of a tunnel being created
+
+    @Override
+    public Tunnels computeTunnels(CalculationSettings cs, VoronoiDiagram vd,
+            Point start, double proteinR, SnapId snapId, CaverCounter counter)
+            throws IOException, CalculationException {
+        Logger.getLogger("caver").log(Level.WARNING, "Waypoints are not used "
+                + "by tunnel_computation k_shortest_paths.");
+        return computeTunnelsBlock(cs, vd, start, snapId, counter);
+    }
+
+    @Override
+    public Tunnels computeTunnelsBlock(CalculationSettings cs,
+            VoronoiDiagram vd, Point origin, SnapId snapId,
+            CaverCounter counter) throws IOException {
+
+        VoronoiDiagramSearches tp = new VoronoiDiagramSearches();
+        int sourceNode = DijkstraTunnelComputation.prepareBlock(cs, vd,
+                origin, tp);
+        Point voronoiOrigin = vd.getPoint(sourceNode);
+
+        Clock.start("compute tunnels: k shortest paths");
+        vd_ = vd;
+        minRadius_ = cs.getProbeRadius();
+        sourceNode_ = sourceNode;
+        tables_ = null;
+        search_ = new SearchOverlay(new SearchTables(vd.size()));
+        removed_ = new int[vd.size()];
+        blocked_ = new int[vd.size()];
+
+        Tunnels tunnels = Tunnels.create(origin, voronoiOrigin, sourceNode, cs);
+        int k = cs.getMaxNumberOfTunnels();
+        long limit = (long) PATHS_PER_TUNNEL * k;
+        double min = cs.getMinPathDivergence();
+
+        Prefixes found = new Prefixes(); // paths taken from candidates
+        int enumerated = 0;
+        int accepted = 0; // paths made into tunnels
+        PriorityQueue<Path> candidates = new PriorityQueue<Path>();
+        Set<Path> known = new HashSet<Path>();
+        int order = 0;
+        coveredBy_ = new int[vd.size()][];
+        coveredCount_ = new int[vd.size()];
+
+        version_++;
+        int[] first = search(sourceNode, false);
+        if (null != first) {
+            Path p = new Path(first, 0, order++);
+            candidates.add(p);
+            known.add(p);
+        }
+
+        while (!candidates.isEmpty() && tunnels.size() < k
+                && enumerated < limit) {
+            Path p = candidates.poll();
+            found.add(p.nodes_);
+            enumerated++;
+
+            boolean distinct = diverges(p, accepted, min);
+            if (distinct) {
+                Tunnel tunnel = createTunnel(p, origin, snapId, counter, cs);
+                if (null != tunnel) {
+                    tunnels.add(tunnel);
+                    if (0 < min) {
+                        cover(p, accepted);
+                    }
+                    accepted++;
+                }
+            }
+
+            // paths found before with the same nodes up to the spur node are
+            // below it in the prefixes, spur nodes before the deviation of
+            // the path give paths found from the paths it deviated from
+            int prefix = Prefixes.ROOT;
+            for (int i = 0; i < p.nodes_.length; i++) {
+                int spur = p.nodes_[i];
+                prefix = found.getChild(prefix, spur);
+                if (i < p.deviation_ || (!distinct && i != p.deviation_
+                        && 0 < coveredCount_[spur])) {
+                    continue; // deviations near a tunnel are not distinct
+                }
+                version_++;
+                for (int j = 0; j < i; j++) {
+                    removed_[p.nodes_[j]] = version_;
+                }
+                boolean surfaceBlocked = found.isEnd(prefix);
+                for (int c = found.getFirstChild(prefix); Prefixes.NULL != c;
+                        c = found.getSibling(c)) {
+                    blocked_[found.getNode(c)] = version_;
+                }
+
+                int[] spurPath = search(spur, surfaceBlocked);
+                if (null != spurPath) {
+                    int[] nodes = new int[i + spurPath.length];
+                    System.arraycopy(p.nodes_, 0, nodes, 0, i);
+                    System.arraycopy(spurPath, 0, nodes, i, spurPath.length);
+                    Path c = new Path(nodes, i, order++);
+                    if (known.add(c)) {
+                        candidates.add(c);
+                    }
+                }
+            }
+        }
+
+        Printer.println(enumerated + " paths enumerated, "
+                + tunnels.size() + " found.");
+        Clock.stop("compute tunnels: k shortest paths");
+        return tunnels;
+    }
+
+    /*
+     * Tables of the cheapest paths from the start, computed on demand.
+     */
+    @Override
+    public SearchTables getSearchTables() {
+        if (null == tables_ && null != vd_) {
+            tables_ = new SearchTables(vd_.size());
+            new VoronoiDiagramSearches().dijkstra(vd_, tables_, sourceNode_,
+                    minRadius_);
+        }
+        return tables_;
+    }
+
+    /*
+     * Cheapest path from the node to the surface avoiding the removed nodes
+     * and the blocked next nodes of the node, from the node on, null if
+     * there is none. If surfaceBlocked, the path does not end in the node.
+     */
+    private int[] search(int source, boolean surfaceBlocked) {
+        search_.reset();
+        IndexedHeap q = queue_;
+        q.clear(vd_.size());
+        search_.set(source, 0, SearchTables.NULL);
+        q.push(source, 0);
+
+        while (!q.isEmpty()) {
+            int u = q.pop();
+
+            if (vd_.isOuter(u) && (u != source || !surfaceBlocked)) {
+                int length = 0;
+                for (int b = u; SearchTables.NULL != b;
+                        b = search_.getPrevious(b)) {
+                    length++;
+                }
+                int[] path = new int[length];
+                for (int b = u; SearchTables.NULL != b;
+                        b = search_.getPrevious(b)) {
+                    path[--length] = b;
+                }
+                return path;
+            }
+
+            // from the shells there is no way back inside
+            boolean inside = !vd_.disabled(u);
+            for (int i = 0; i < 4; i++) {
+                int v = vd_.getNeighbour(u, i);
+                if (!vd_.valid(v) || version_ == removed_[v]
+                        || (u == source && version_ == blocked_[v])
+                        || (!inside && !vd_.disabled(v))
+                        || vd_.getBottleneckByGate(u, i) < minRadius_) {
+                    continue;
+                }
+                double alt = search_.getDistance(u) + vd_.getWeight(u, i);
+                if (alt < search_.getDistance(v)) {
+                    search_.set(v, alt, u);
+                    q.push(v, alt);
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Is the path at least min long out of each of the accepted paths? A
+     * path is the union of the spheres of its nodes, an edge counts if one
+     * of its nodes is out of the other path, so a detour along it does not
+     * count. Paths which cover none of its nodes are as far as its length.
+     */
+    private boolean diverges(Path p, int accepted, double min) {
+        if (0 == min || 0 == accepted) {
+            return true;
+        }
+        double total = 0;
+        for (int i = 1; i < p.nodes_.length; i++) {
+            total += vd_.getPoint(p.nodes_[i - 1]).distance(
+                    vd_.getPoint(p.nodes_[i]));
+        }
+        int touched = 0;
+        for (int n : p.nodes_) {
+            touched += coveredCount_[n];
+        }
+        if (touched < accepted && total < min) {
+            return false; // some path covers none of its nodes
+        }
+        // the paths covering a node of the path, each once
+        version_++;
+        for (int n : p.nodes_) {
+            for (int j = 0; j < coveredCount_[n]; j++) {
+                int q = coveredBy_[n][j];
+                if (version_ == tested_[q]) {
+                    continue;
+                }
+                tested_[q] = version_;
+                double length = 0;
+                boolean out = !covers(p.nodes_[0], q);
+                for (int i = 1; i < p.nodes_.length; i++) {
+                    boolean last = out;
+                    out = !covers(p.nodes_[i], q);
+                    if (last || out) {
+                        length += vd_.getPoint(p.nodes_[i - 1]).distance(
+                                vd_.getPoint(p.nodes_[i]));
+                    }
+                }
+                if (length < min) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Records the nodes in the spheres of the nodes of the accepted path q,
+     * found by the grid of the diagram instead of testing all nodes.
+     */
+    private void cover(Path p, int q) {
+        if (tested_.length <= q) {
+            tested_ = Arrays.copyOf(tested_, 2 * q + 2);
+        }
+        for (int n : p.nodes_) {
+            Sphere s = vd_.getSphere(n);
+            // padded, the grid measures distances in its own way
+            for (int x : vd_.getNodesWithin(s.getS(),
+                    s.getR() * (1 + 1e-9) + 1e-9, Double.NEGATIVE_INFINITY)) {
+                if (!(vd_.getPoint(x).distance(s.getS()) < s.getR())
+                        || covers(x, q)) {
+                    continue;
+                }
+                if (null == coveredBy_[x]) {
+                    coveredBy_[x] = new int[2];
+                } else if (coveredBy_[x].length == coveredCount_[x]) {
+                    coveredBy_[x] = Arrays.copyOf(coveredBy_[x],
+                            2 * coveredCount_[x]);
+                }
+                coveredBy_[x][coveredCount_[x]++] = q;
+            }
+        }
+    }
+
+    /*
+     * Is the node in a sphere of a node of the accepted path q? Paths are
+     * recorded in the order of acceptance, q is the last if recorded.
+     */
+    private boolean covers(int node, int q) {
+        int c = coveredCount_[node];
+        if (0 == c) {
+            return false;
+        }
+        int i = Arrays.binarySearch(coveredBy_[node], 0, c, q);
+        return 0 <= i;
+    }
+
+    private Tunnel createTunnel(Path p, Point origin, SnapId snapId,
+            CaverCounter counter, CalculationSettings cs) {
+        if (p.nodes_.length <= 3) {
+            return null;
+        }
+        // from the surface to the start, as the paths of other computations
+        paths_.clear();
+        paths_.addReversed(p.nodes_, p.cost_);
+        return Tunnel.create(origin, snapId, counter.get(), vd_, paths_, 0,
+                cs.getShellRadius(), cs.getProfileTunnelSamplingStep(), cs);
+    }
+
+    private double weight(int a, int b) {
+        for (int i = 0; i < 4; i++) {
+            if (b == vd_.getNeighbour(a, i)) {
+                return vd_.getWeight(a, i);
+            }
+        }
+        throw new IllegalArgumentException(a + " " + b);
+    }
+
+    /*
+     * Trie of the paths taken from the candidates, the paths through a trie
+     * node have the same beginning, so the next nodes of the paths found
+     * before with the beginning of a path are the children of its trie node
+     * instead of a scan of all paths found.
+     */
+    private static class Prefixes {
+
+        static final int ROOT = 0;
+        static final int NULL = -1;
+        private int[] node_ = {NULL}; // of the diagram, last of the beginning
+        private int[] child_ = {NULL}; // first
+        private int[] sibling_ = {NULL}; // next child of the parent
+        private boolean[] end_ = {false}; // a path ends here
+        private int size_ = 1;
+
+        public void add(int[] nodes) {
+            int t = ROOT;
+            for (int n : nodes) {
+                int c = getChild(t, n);
+                if (NULL == c) {
+                    c = create(n, t);
+                }
+                t = c;
+            }
+            end_[t] = true;
+        }
+
+        /*
+         * The child of the trie node for the diagram node, NULL if none.
+         */
+        public int getChild(int t, int node) {
+            for (int c = child_[t]; NULL != c; c = sibling_[c]) {
+                if (node == node_[c]) {
+                    return c;
+                }
+            }
+            return NULL;
+        }
+
+        public int getFirstChild(int t) {
+            return child_[t];
+        }
+
+        public int getSibling(int t) {
+            return sibling_[t];
+        }
+
+        public int getNode(int t) {
+            return node_[t];
+        }
+
+        public boolean isEnd(int t) {
+            return end_[t];
+        }
+
+        private int create(int node, int parent) {
+            if (node_.length == size_) {
+                node_ = Arrays.copyOf(node_, 2 * size_);
+                child_ = Arrays.copyOf(child_, 2 * size_);
+                sibling_ = Arrays.copyOf(sibling_, 2 * size_);
+                end_ = Arrays.copyOf(end_, 2 * size_);
+            }
+            int t = size_++;
+            node_[t] = node;
+            child_[t] = NULL;
+            end_[t] = false;
+            sibling_[t] = child_[parent];
+            child_[parent] = t;
+            return t;
+        }
+    }
+
+    /*
+     * Path from the start, ordered by cost and then by the order in which
+     * it was found. Paths are equal if they have the same nodes.
+     */
+    private class Path implements Comparable<Path> {
+
+        private int[] nodes_;
+        private int deviation_; // index of the spur node it was found from
+        private double cost_;
+        private int order_;
+
+        public Path(int[] nodes, int deviation, int order) {
+            nodes_ = nodes;
+            deviation_ = deviation;
+            order_ = order;
+            for (int i = 0; i + 1 < nodes.length; i++) {
+                cost_ += weight(nodes[i], nodes[i + 1]);
+            }
+        }
+
+        @Override
+        public int compareTo(Path p) {
+            int c = Double.compare(cost_, p.cost_);
+            if (0 == c) {
+                c = order_ < p.order_ ? -1 : (order_ == p.order_ ? 0 : 1);
+            }
+            return c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Path && Arrays.equals(nodes_, ((Path) o).nodes_);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes_);
+        }
+    }
+}
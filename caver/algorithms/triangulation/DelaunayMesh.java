@@ -0,0 +1,826 @@
+package algorithms.triangulation;
+
+import algorithms.triangulation.qhull.FacetStore;
+import algorithms.triangulation.qhull.Predicates;
+import algorithms.triangulation.qhull.Vertex;
+import java.util.Arrays;
+
+/*
+ * Delaunay tetrahedralization kept in primitive arrays, which can follow
+ * moving points. Tetrahedron t has corners corners_[4t..4t+3], positively
+ * oriented by Predicates.orient3d, and neighbor neighbors_[4t+k] opposite
+ * to the corner k, NULL on the convex hull. Slots of removed tetrahedrons
+ * are reused.
+ *
+ * After the points move, tetrahedrons which are no longer Delaunay are
+ * repaired by Lawson's 2-3 and 3-2 flips. Movements inverting a
+ * tetrahedron or changing the convex hull are split into smaller steps.
+ * Degenerate configurations which would need 4-4 flips, too many invalid
+ * tetrahedrons or too small steps end the update unsuccessfully and the
+ * caller should triangulate from scratch.
+ */
+public class DelaunayMesh {
+
+    public static final int NULL = -1;
+    private static final int MAX_SPLITS = 5; // of a movement into halves
+    private static final int MAX_FLIPS_PER_TETRAHEDRON = 10;
+    private static final int MAX_UNTANGLING_ROUNDS = 16;
+    private Vertex[] vertices_;
+    private int[] corners_;
+    private int[] neighbors_;
+    private boolean[] dead_;
+    private int[] free_ = new int[16];
+    private int freeCount_;
+    private int size_;
+    private int[] stack_ = new int[16];
+    private int stackSize_;
+    private int flips_;
+
+    private DelaunayMesh(Vertex[] vertices, int capacity) {
+        vertices_ = vertices;
+        capacity = Math.max(16, capacity);
+        corners_ = new int[4 * capacity];
+        neighbors_ = new int[4 * capacity];
+        dead_ = new boolean[capacity];
+    }
+
+    /*
+     * Tetrahedrons are the lower facets of the convex hull of lifted points,
+     * in the order of their creation. Neighbor k of facet shares its corners
+     * k, k + 1 and k + 2, i.e. it is opposite to the corner k + 3.
+     */
+    public static DelaunayMesh create(FacetStore faces, Vertex[] vertices) {
+        int[] facets = faces.getFacets();
+        int[] tetrahedrons = new int[faces.size()];
+        Arrays.fill(tetrahedrons, NULL);
+        int count = 0;
+        for (int f : facets) {
+            if (faces.isLower(f)) {
+                tetrahedrons[f] = count++;
+            }
+        }
+        DelaunayMesh mesh = new DelaunayMesh(vertices, count);
+        mesh.size_ = count;
+        for (int f : facets) {
+            int t = tetrahedrons[f];
+            if (NULL == t) {
+                continue;
+            }
+            for (int k = 0; k < 4; k++) {
+                mesh.corners_[4 * t + k] = faces.getCorner(f, k);
+                mesh.neighbors_[4 * t + k] =
+                        tetrahedrons[faces.getNeighbor(f, (k + 1) % 4)];
+            }
+        }
+        return mesh;
+    }
+
+    /*
+     * Tetrahedron t has corners corners[4t..4t+3], indices to vertices, and
+     * neighbors[4t+k] opposite to the corner k. The arrays are not copied.
+     */
+    static DelaunayMesh create(Vertex[] vertices, int[] corners,
+            int[] neighbors) {
+        int count = corners.length / 4;
+        DelaunayMesh mesh = new DelaunayMesh(vertices, 0);
+        mesh.corners_ = corners;
+        mesh.neighbors_ = neighbors;
+        mesh.dead_ = new boolean[count];
+        mesh.size_ = count;
+        return mesh;
+    }
+
+    /*
+     * Number of slots, including removed tetrahedrons.
+     */
+    public int size() {
+        return size_;
+    }
+
+    public boolean isDead(int t) {
+        return dead_[t];
+    }
+
+    public Vertex[] getVertices() {
+        return vertices_;
+    }
+
+    public Vertex getVertex(int t, int k) {
+        return vertices_[corners_[4 * t + k]];
+    }
+
+    /*
+     * Neighbor opposite to the corner k.
+     */
+    public int getNeighbor(int t, int k) {
+        return neighbors_[4 * t + k];
+    }
+
+    public int getFlips() {
+        return flips_;
+    }
+
+    /*
+     * Moves vertex i to target[3i..3i+2] and restores the Delaunay property.
+     * Fails if more than maxInvalid fraction of tetrahedrons is inverted or
+     * not Delaunay at the target, or after a step, the mesh should not be
+     * used then.
+     */
+    public boolean relocate(double[] target, double maxInvalid) {
+        double[] start = new double[3 * vertices_.length];
+        for (int i = 0; i < vertices_.length; i++) {
+            System.arraycopy(vertices_[i].coordinates, 0, start, 3 * i, 3);
+        }
+        flips_ = 0;
+        // a doomed update is given up before the steps and the repairs
+        move(start, target, 1);
+        if (exceeds(maxInvalid * (size_ - freeCount_))) {
+            return false;
+        }
+        double done = 0;
+        double step = 1;
+        while (done < 1) {
+            double next = Math.min(1, done + step);
+            move(start, target, next);
+            if (!isValid() && !untangle()) {
+                step /= 2;
+                if (step < 1.0 / (1 << MAX_SPLITS)) {
+                    return false;
+                }
+                move(start, target, done);
+                continue;
+            }
+            if (maxInvalid * (size_ - freeCount_) < collectInvalid()
+                    || !repair()) {
+                return false;
+            }
+            done = next;
+            step *= 2;
+        }
+        return true;
+    }
+
+    /*
+     * Positions in fraction of the way from start to target, exactly the
+     * target for 1.
+     */
+    private void move(double[] start, double[] target, double fraction) {
+        for (int i = 0; i < vertices_.length; i++) {
+            double[] c = vertices_[i].coordinates;
+            double lift = 0;
+            for (int j = 0; j < 3; j++) {
+                if (1 == fraction) {
+                    c[j] = target[3 * i + j];
+                } else {
+                    c[j] = start[3 * i + j] + fraction
+                            * (target[3 * i + j] - start[3 * i + j]);
+                }
+                lift += c[j] * c[j];
+            }
+            if (3 < c.length) {
+                c[3] = lift;
+            }
+        }
+    }
+
+    /*
+     * The mesh is a triangulation of the convex hull of the points: all
+     * tetrahedrons are positively oriented, neighbors lie on opposite sides
+     * of their common face, all points are used and the hull faces bound a
+     * convex polyhedron.
+     */
+    private boolean isValid() {
+        boolean[] used = new boolean[vertices_.length];
+        int hullFaces = 0;
+        int start = NULL;
+        for (int t = 0; t < size_; t++) {
+            if (dead_[t]) {
+                continue;
+            }
+            if (isInverted(t)) {
+                return false;
+            }
+            for (int k = 0; k < 4; k++) {
+                used[corners_[4 * t + k]] = true;
+                int u = neighbors_[4 * t + k];
+                if (NULL == u) {
+                    hullFaces++;
+                    start = 4 * t + k;
+                } else if (t < u) {
+                    int[] face = face(t, k);
+                    if (0 <= orient3d(face[0], face[1], face[2],
+                            corners_[4 * u + opposite(u, t)])) {
+                        return false;
+                    }
+                }
+            }
+        }
+        for (boolean b : used) {
+            if (!b) {
+                return false;
+            }
+        }
+        return isConvex(hullFaces, start);
+    }
+
+    /*
+     * Hull faces form a connected surface which is strictly convex at each
+     * edge and wound once around each vertex, it is then the boundary of a
+     * convex polyhedron.
+     */
+    private boolean isConvex(int hullFaces, int start) {
+        boolean[] visited = new boolean[4 * size_];
+        int[] stack = new int[hullFaces];
+        int stackSize = 0;
+        int count = 0;
+        stack[stackSize++] = start;
+        visited[start] = true;
+        while (0 < stackSize) {
+            int face = stack[--stackSize];
+            int t = face / 4;
+            int[] f = face(t, face % 4);
+            for (int i = 0; i < 3; i++) {
+                int a = f[i];
+                int b = f[(i + 1) % 3];
+                int adjacent = hullFace(t, f[(i + 2) % 3], a, b);
+                if (orient3d(f[0], f[1], f[2], apex(adjacent, a, b)) <= 0) {
+                    return false;
+                }
+                if (!visited[adjacent]) {
+                    visited[adjacent] = true;
+                    stack[stackSize++] = adjacent;
+                }
+            }
+            count++;
+        }
+        if (count != hullFaces) {
+            return false;
+        }
+        // outward normals of faces around each vertex, summed
+        double[] normals = new double[3 * vertices_.length];
+        double[] angles = new double[vertices_.length];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int face = 0; face < 4 * size_; face++) {
+                if (!visited[face]) {
+                    continue;
+                }
+                int[] f = face(face / 4, face % 4);
+                double[] n = normal(f);
+                for (int i = 0; i < 3; i++) {
+                    int v = f[i];
+                    if (0 == pass) {
+                        for (int j = 0; j < 3; j++) {
+                            normals[3 * v + j] += n[j];
+                        }
+                    } else {
+                        double[] axis = Arrays.copyOfRange(normals, 3 * v,
+                                3 * v + 3);
+                        if (dot(axis, n) <= 0) {
+                            return false;
+                        }
+                        angles[v] += angle(axis, v, f[(i + 1) % 3],
+                                f[(i + 2) % 3]);
+                    }
+                }
+            }
+        }
+        for (double angle : angles) {
+            if (3 * Math.PI < Math.abs(angle)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Normal of the face pointing to its negative side, i.e. out of the
+     * tetrahedron, with length of twice its area.
+     */
+    private double[] normal(int[] f) {
+        double[] a = vertices_[f[0]].coordinates;
+        double[] b = vertices_[f[1]].coordinates;
+        double[] c = vertices_[f[2]].coordinates;
+        double[] n = cross(new double[]{b[0] - a[0], b[1] - a[1], b[2] - a[2]},
+                new double[]{c[0] - a[0], c[1] - a[1], c[2] - a[2]});
+        if (0 < Predicates.orient3d(a, b, c, new double[]{a[0] + n[0],
+                a[1] + n[1], a[2] + n[2]})) {
+            for (int j = 0; j < 3; j++) {
+                n[j] = -n[j];
+            }
+        }
+        return n;
+    }
+
+    /*
+     * Angle of the face v, a, b at v projected to the plane perpendicular to
+     * axis, signed by the orientation of the face around the axis.
+     */
+    private double angle(double[] axis, int v, int a, int b) {
+        double[] x = vertices_[v].coordinates;
+        double length = Math.sqrt(dot(axis, axis));
+        double[] e = new double[3];
+        double[] f = new double[3];
+        for (int j = 0; j < 3; j++) {
+            e[j] = vertices_[a].coordinates[j] - x[j];
+            f[j] = vertices_[b].coordinates[j] - x[j];
+        }
+        double de = dot(e, axis) / length / length;
+        double df = dot(f, axis) / length / length;
+        for (int j = 0; j < 3; j++) {
+            e[j] -= de * axis[j];
+            f[j] -= df * axis[j];
+        }
+        return Math.atan2(dot(cross(e, f), axis) / length, dot(e, f));
+    }
+
+    private static double[] cross(double[] u, double[] v) {
+        return new double[]{u[1] * v[2] - u[2] * v[1],
+            u[2] * v[0] - u[0] * v[2], u[0] * v[1] - u[1] * v[0]};
+    }
+
+    private static double dot(double[] u, double[] v) {
+        return u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+    }
+
+    /*
+     * Walks around the edge ab from the hull face of t containing c to the
+     * other hull face containing the edge, returns 4u + j for the face of
+     * tetrahedron u opposite to its corner j.
+     */
+    private int hullFace(int t, int c, int a, int b) {
+        int previous = c;
+        while (true) {
+            // the face of t containing the edge other than (a, b, previous)
+            int other = NULL;
+            for (int k = 0; k < 4; k++) {
+                int v = corners_[4 * t + k];
+                if (v != a && v != b && v != previous) {
+                    other = v;
+                }
+            }
+            int k = index(t, previous);
+            int u = neighbors_[4 * t + k];
+            if (NULL == u) {
+                return 4 * t + k;
+            }
+            previous = other;
+            t = u;
+        }
+    }
+
+    /*
+     * Vertex of the face 4t + k other than a and b.
+     */
+    private int apex(int face, int a, int b) {
+        int t = face / 4;
+        for (int k = 0; k < 4; k++) {
+            int v = corners_[4 * t + k];
+            if (k != face % 4 && v != a && v != b) {
+                return v;
+            }
+        }
+        return NULL;
+    }
+
+    /*
+     * Makes the mesh valid after points moved, it is restored if that fails.
+     * Inverted tetrahedrons are flipped with their neighbors or removed if a
+     * point crossed their hull face, reflex hull edges are filled by
+     * tetrahedrons.
+     */
+    private boolean untangle() {
+        int[] corners = corners_.clone();
+        int[] neighbors = neighbors_.clone();
+        boolean[] dead = dead_.clone();
+        int[] free = free_.clone();
+        int freeCount = freeCount_;
+        int size = size_;
+        int flips = flips_;
+        boolean changed = true;
+        for (int round = 0; changed && round < MAX_UNTANGLING_ROUNDS;
+                round++) {
+            changed = false;
+            for (int t = 0, n = size_; t < n; t++) {
+                if (dead_[t]) {
+                    continue;
+                }
+                boolean hull = false;
+                for (int k = 0; k < 4; k++) {
+                    hull |= NULL == neighbors_[4 * t + k];
+                }
+                if (isInverted(t)) {
+                    boolean flipped = false;
+                    for (int k = 0; !flipped && k < 4; k++) {
+                        flipped = NULL != neighbors_[4 * t + k] && flip(t, k);
+                    }
+                    if (!flipped && hull) {
+                        remove(t);
+                        flipped = true;
+                    }
+                    changed |= flipped;
+                } else if (hull) {
+                    for (int k = 0; k < 4; k++) {
+                        if (NULL == neighbors_[4 * t + k] && fill(t, k)) {
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (isValid()) {
+            return true;
+        }
+        corners_ = corners;
+        neighbors_ = neighbors;
+        dead_ = dead;
+        free_ = free;
+        freeCount_ = freeCount;
+        size_ = size;
+        flips_ = flips;
+        return false;
+    }
+
+    private void remove(int t) {
+        for (int k = 0; k < 4; k++) {
+            int n = neighbors_[4 * t + k];
+            if (NULL != n) {
+                neighbors_[4 * n + opposite(n, t)] = NULL;
+            }
+        }
+        release(t);
+        flips_++;
+    }
+
+    /*
+     * Adds a tetrahedron on the hull face opposite to corner k of t if an
+     * adjacent hull face bends outwards.
+     */
+    private boolean fill(int t, int k) {
+        int[] face = face(t, k);
+        for (int i = 0; i < 3; i++) {
+            int a = face[i];
+            int b = face[(i + 1) % 3];
+            int c = face[(i + 2) % 3];
+            int adjacent = hullFace(t, c, a, b);
+            int x = apex(adjacent, a, b);
+            if (0 <= orient3d(face[0], face[1], face[2], x)) {
+                continue;
+            }
+            int bc = hullFace(t, a, b, c);
+            int ca = hullFace(t, b, c, a);
+            int created = create(face[1], face[0], face[2], x);
+            link(created, 4 * t + k);
+            link(created, adjacent);
+            // hull faces on the other edges may be covered too
+            if (x == apex(bc, b, c)) {
+                link(created, bc);
+            }
+            if (x == apex(ca, c, a)) {
+                link(created, ca);
+            }
+            push(created);
+            flips_++;
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Are there more inverted or not Delaunay tetrahedrons than the limit?
+     * Counting stops when the limit is exceeded and the cheaper orientation
+     * test is done first.
+     */
+    private boolean exceeds(double limit) {
+        int count = 0;
+        for (int t = 0; t < size_; t++) {
+            if (dead_[t]) {
+                continue;
+            }
+            boolean invalid = isInverted(t);
+            for (int k = 0; !invalid && k < 4; k++) {
+                invalid = !isDelaunay(t, k);
+            }
+            if (invalid && limit < ++count) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Puts inverted tetrahedrons and tetrahedrons with a non Delaunay face
+     * to the stack and returns their number.
+     */
+    private int collectInvalid() {
+        stackSize_ = 0;
+        for (int t = 0; t < size_; t++) {
+            if (dead_[t]) {
+                continue;
+            }
+            boolean invalid = isInverted(t);
+            for (int k = 0; !invalid && k < 4; k++) {
+                invalid = !isDelaunay(t, k);
+            }
+            if (invalid) {
+                push(t);
+            }
+        }
+        return stackSize_;
+    }
+
+    /*
+     * Flips non Delaunay faces of tetrahedrons on the stack and of the
+     * created ones until all of them are Delaunay.
+     */
+    private boolean repair() {
+        int maxFlips = flips_
+                + MAX_FLIPS_PER_TETRAHEDRON * (size_ - freeCount_);
+        int[] stuck = new int[16];
+        int stuckCount = 0;
+        int retried = -1;
+        while (true) {
+            while (0 < stackSize_) {
+                int t = stack_[--stackSize_];
+                if (dead_[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 4; k++) {
+                    if (!isDelaunay(t, k)) {
+                        if (flip(t, k)) {
+                            break;
+                        }
+                        if (stuck.length == stuckCount) {
+                            stuck = Arrays.copyOf(stuck, 2 * stuckCount);
+                        }
+                        stuck[stuckCount++] = t;
+                    }
+                }
+                if (maxFlips < flips_) {
+                    return false;
+                }
+            }
+            if (0 == stuckCount) {
+                return true;
+            }
+            // faces which could not be flipped may become flippable after
+            // flips of their surroundings
+            if (retried == flips_) {
+                return false;
+            }
+            retried = flips_;
+            for (int i = 0; i < stuckCount; i++) {
+                if (!dead_[stuck[i]]) {
+                    push(stuck[i]);
+                }
+            }
+            stuckCount = 0;
+        }
+    }
+
+    private boolean isDelaunay(int t, int k) {
+        int u = neighbors_[4 * t + k];
+        if (NULL == u) {
+            return true;
+        }
+        int e = corners_[4 * u + opposite(u, t)];
+        int i = 4 * t;
+        return Predicates.orient(vertices_[corners_[i]],
+                vertices_[corners_[i + 1]], vertices_[corners_[i + 2]],
+                vertices_[corners_[i + 3]], vertices_[e]) < 0;
+    }
+
+    /*
+     * Replaces t and its neighbor opposite to corner k by three tetrahedrons
+     * (2-3 flip), or t, the neighbor and a third tetrahedron around an edge
+     * of their common face by two tetrahedrons (3-2 flip). Returns false if
+     * neither is possible. Created tetrahedrons are oriented consistently
+     * with t, the flip is done only if less of them are inverted than of
+     * the removed ones, or none if no removed one is inverted.
+     */
+    private boolean flip(int t, int k) {
+        int u = neighbors_[4 * t + k];
+        int d = corners_[4 * t + k];
+        int e = corners_[4 * u + opposite(u, t)];
+        int[] face = face(t, k);
+        int inverted = (isInverted(t) ? 1 : 0) + (isInverted(u) ? 1 : 0);
+        int created = 0;
+        for (int i = 0; i < 3; i++) {
+            if (orient3d(face[(i + 1) % 3], face[i], d, e) <= 0) {
+                created++;
+            }
+        }
+        if (created < Math.max(1, inverted)) {
+            int[] tetrahedrons = new int[3];
+            for (int i = 0; i < 3; i++) {
+                tetrahedrons[i] = create(face[(i + 1) % 3], face[i], d, e);
+            }
+            replace(new int[]{t, u}, tetrahedrons);
+            return true;
+        }
+        for (int i = 0; i < 3; i++) {
+            int p = face[i];
+            int q = face[(i + 1) % 3];
+            int r = face[(i + 2) % 3];
+            int w = neighbors_[4 * t + index(t, r)];
+            if (NULL == w || w != neighbors_[4 * u + index(u, r)]) {
+                continue; // the edge pq is not of degree three
+            }
+            created = (orient3d(d, r, e, p) <= 0 ? 1 : 0)
+                    + (orient3d(r, d, e, q) <= 0 ? 1 : 0);
+            if (created < Math.max(1, inverted + (isInverted(w) ? 1 : 0))) {
+                replace(new int[]{t, u, w},
+                        new int[]{create(d, r, e, p), create(r, d, e, q)});
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInverted(int t) {
+        return orient3d(corners_[4 * t], corners_[4 * t + 1],
+                corners_[4 * t + 2], corners_[4 * t + 3]) <= 0;
+    }
+
+    /*
+     * Links created tetrahedrons, which fill the same space as the removed
+     * ones, to each other and to the neighbors of the removed ones.
+     */
+    private void replace(int[] removed, int[] created) {
+        // faces of the outer neighbors, as 4u + j for corner j of u
+        int[] outer = new int[4 * removed.length];
+        int outerCount = 0;
+        for (int t : removed) {
+            for (int k = 0; k < 4; k++) {
+                int n = neighbors_[4 * t + k];
+                if (NULL != n && !contains(removed, n)) {
+                    for (int j = 0; j < 4; j++) {
+                        int v = corners_[4 * n + j];
+                        if (v == corners_[4 * t + k] || NULL == index(t, v)) {
+                            outer[outerCount++] = 4 * n + j;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        for (int a : created) {
+            for (int k = 0; k < 4; k++) {
+                int[] f = face(a, k);
+                int neighbor = NULL;
+                for (int b : created) {
+                    if (b != a && hasFace(b, f)) {
+                        neighbor = b;
+                    }
+                }
+                for (int i = 0; NULL == neighbor && i < outerCount; i++) {
+                    if (isFace(outer[i], f)) {
+                        neighbor = outer[i] / 4;
+                        neighbors_[outer[i]] = a;
+                    }
+                }
+                neighbors_[4 * a + k] = neighbor;
+            }
+        }
+        for (int t : removed) {
+            release(t);
+        }
+        for (int a : created) {
+            push(a);
+        }
+        flips_++;
+    }
+
+    /*
+     * Makes t and the tetrahedron of the face 4u + j neighbors across it.
+     */
+    private void link(int t, int face) {
+        int u = face / 4;
+        for (int k = 0; k < 4; k++) {
+            int v = corners_[4 * t + k];
+            int j = index(u, v);
+            if (NULL == j || j == face % 4) {
+                neighbors_[4 * t + k] = u;
+                neighbors_[face] = t;
+                return;
+            }
+        }
+    }
+
+    /*
+     * The face 4t + k consists of the vertices.
+     */
+    private boolean isFace(int face, int[] vertices) {
+        for (int v : vertices) {
+            int k = index(face / 4, v);
+            if (NULL == k || k == face % 4) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasFace(int t, int[] face) {
+        for (int v : face) {
+            if (NULL == index(t, v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] a, int x) {
+        for (int y : a) {
+            if (x == y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Corners of t except corner k, ordered so that the corner k is on
+     * their positive side.
+     */
+    private int[] face(int t, int k) {
+        int[] f = new int[3];
+        for (int i = 0, j = 0; i < 4; i++) {
+            if (i != k) {
+                f[j++] = corners_[4 * t + i];
+            }
+        }
+        if (1 == (3 - k) % 2) {
+            int temp = f[0];
+            f[0] = f[1];
+            f[1] = temp;
+        }
+        return f;
+    }
+
+    /*
+     * Index of corner v of t, NULL if t does not contain it.
+     */
+    private int index(int t, int v) {
+        for (int k = 0; k < 4; k++) {
+            if (v == corners_[4 * t + k]) {
+                return k;
+            }
+        }
+        return NULL;
+    }
+
+    /*
+     * Index of corner of t opposite to neighbor u.
+     */
+    private int opposite(int t, int u) {
+        for (int k = 0; k < 4; k++) {
+            if (u == neighbors_[4 * t + k]) {
+                return k;
+            }
+        }
+        throw new IllegalStateException("Tetrahedrons " + t + " and " + u
+                + " are not neighbors.");
+    }
+
+    private int orient3d(int a, int b, int c, int d) {
+        return Predicates.orient3d(vertices_[a].coordinates,
+                vertices_[b].coordinates, vertices_[c].coordinates,
+                vertices_[d].coordinates);
+    }
+
+    private int create(int a, int b, int c, int d) {
+        int t;
+        if (0 < freeCount_) {
+            t = free_[--freeCount_];
+            dead_[t] = false;
+        } else {
+            if (dead_.length == size_) {
+                corners_ = Arrays.copyOf(corners_, 8 * size_);
+                neighbors_ = Arrays.copyOf(neighbors_, 8 * size_);
+                dead_ = Arrays.copyOf(dead_, 2 * size_);
+            }
+            t = size_++;
+        }
+        corners_[4 * t] = a;
+        corners_[4 * t + 1] = b;
+        corners_[4 * t + 2] = c;
+        corners_[4 * t + 3] = d;
+        Arrays.fill(neighbors_, 4 * t, 4 * t + 4, NULL);
+        return t;
+    }
+
+    private void release(int t) {
+        dead_[t] = true;
+        if (free_.length == freeCount_) {
+            free_ = Arrays.copyOf(free_, 2 * freeCount_);
+        }
+        free_[freeCount_++] = t;
+    }
+
+    private void push(int t) {
+        if (stack_.length == stackSize_) {
+            stack_ = Arrays.copyOf(stack_, 2 * stackSize_);
+        }
+        stack_[stackSize_++] = t;
+    }
+}
@@ -0,0 +1,113 @@
+package algorithms.triangulation;
+
+import algorithms.search.IndexedHeap;
+
+/*
+ * Widths of the widest paths from the nodes of a Voronoi diagram to its
+ * convex hull, i.e. to the nodes on border, which the paths do not pass.
+ * Edges are added from the widest, Kruskal-like, the nodes on border are
+ * merged into one hull component. The width of the edge which merges a
+ * component with the hull is the widest path from each of its nodes.
+ */
+class HullBottlenecks {
+
+    private double[] widths_; // by node, zero if hull is not reachable
+
+    /*
+     * Gate i of node n leads to neighbours[4 * n + i] through the bottleneck
+     * bottlenecks[4 * n + i], negative neighbours are outside of the diagram.
+     * Edges are expected in both directions with the same bottleneck.
+     */
+    HullBottlenecks(int[] neighbours, double[] bottlenecks) {
+        int n = neighbours.length / 4;
+        int hull = n;
+        int[] parent = new int[n + 1]; // union-find forest
+        int[] size = new int[n + 1];
+        int[] next = new int[n + 1]; // circular lists of component members
+        for (int i = 0; i <= n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+            next[i] = i;
+        }
+        widths_ = new double[n];
+
+        // edges between nodes out of border, or to hull from a node on border
+        int[] from = new int[4 * n];
+        int[] to = new int[4 * n];
+        IndexedHeap edges = new IndexedHeap(); // widest first
+        edges.clear(4 * n);
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < 4; i++) {
+                int v = neighbours[4 * u + i];
+                double width = bottlenecks[4 * u + i];
+                if (v < u || !(0 < width)) { // each edge once
+                    continue;
+                }
+                boolean borderU = border(neighbours, u);
+                boolean borderV = border(neighbours, v);
+                if (borderU && borderV) {
+                    continue;
+                }
+                from[count] = borderU ? hull : u;
+                to[count] = borderV ? hull : v;
+                edges.push(count, -width);
+                count++;
+            }
+        }
+
+        while (!edges.isEmpty()) {
+            int e = edges.pop();
+            double width = -edges.getKey(e);
+            int a = find(parent, from[e]);
+            int b = find(parent, to[e]);
+            if (a == b) {
+                continue;
+            }
+            int h = find(parent, hull);
+            if (a == h || b == h) { // members of the other one reach hull
+                int c = a == h ? b : a;
+                int m = c;
+                do {
+                    widths_[m] = width;
+                    m = next[m];
+                } while (m != c);
+            }
+            if (size[a] < size[b]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            parent[b] = a;
+            size[a] += size[b];
+            int t = next[a];
+            next[a] = next[b];
+            next[b] = t;
+        }
+    }
+
+    /*
+     * Width of the widest path from the node which is not on border to a
+     * node on border, zero if there is none.
+     */
+    double get(int node) {
+        return widths_[node];
+    }
+
+    private static boolean border(int[] neighbours, int node) {
+        for (int i = 4 * node; i < 4 * node + 4; i++) {
+            if (neighbours[i] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+}
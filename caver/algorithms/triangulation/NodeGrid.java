@@ -0,0 +1,203 @@
+package algorithms.triangulation;
+
+import java.util.Arrays;
+
+/*
+ * Uniform grid of cells over the centers of the nodes of a Voronoi diagram,
+ * answers nearest node and radius queries without scanning all nodes. The
+ * grid spans the nodes except the outermost percent along each axis, the
+ * remaining nodes are stored in the border cells, so a few distant nodes do
+ * not make the cells large.
+ */
+class NodeGrid {
+
+    private static final int NULL = -1;
+    private static final int NODES_PER_CELL = 4;
+    private double[] points_; // x, y, z of each node
+    private double[] radii_; // radius of the greatest sphere in node
+    private double[] lo_ = new double[3];
+    private double cell_; // length of an edge of cells
+    private int[] cells_ = new int[3]; // number of cells along the axes
+    private int[] cellStart_; // nodes of cell c are cellNodes_[i] for
+    //                           cellStart_[c] <= i < cellStart_[c + 1]
+    private int[] cellNodes_;
+
+    /*
+     * The arrays are not copied.
+     */
+    NodeGrid(double[] points, double[] radii) {
+        points_ = points;
+        radii_ = radii;
+        int n = radii.length;
+
+        double[] hi = new double[3];
+        double[] axis = new double[n];
+        double extent = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int node = 0; node < n; node++) {
+                axis[node] = points[3 * node + i];
+            }
+            Arrays.sort(axis);
+            if (0 < n) {
+                lo_[i] = axis[n / 100];
+                hi[i] = axis[n - 1 - n / 100];
+            }
+            extent = Math.max(extent, hi[i] - lo_[i]);
+        }
+        double volume = 1;
+        for (int i = 0; i < 3; i++) {
+            volume *= Math.max(hi[i] - lo_[i], extent / Math.max(1, n));
+        }
+        cell_ = Math.cbrt(volume * NODES_PER_CELL / Math.max(1, n));
+        if (!(0 < cell_) || Double.isInfinite(cell_)) {
+            cell_ = 1;
+        }
+        long count;
+        do {
+            count = 1;
+            for (int i = 0; i < 3; i++) {
+                double c = Math.ceil((hi[i] - lo_[i]) / cell_);
+                cells_[i] = (int) Math.max(1, Math.min(c, n + 1));
+                count *= cells_[i];
+            }
+            if (2L * n + 1 < count) { // flat set of nodes
+                cell_ *= 2;
+            }
+        } while (2L * n + 1 < count);
+
+        cellStart_ = new int[(int) count + 1];
+        int[] cellOf = new int[n];
+        for (int node = 0; node < n; node++) {
+            cellOf[node] = cell(index(points[3 * node], 0),
+                    index(points[3 * node + 1], 1),
+                    index(points[3 * node + 2], 2));
+            cellStart_[cellOf[node] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            cellStart_[c + 1] += cellStart_[c];
+        }
+        cellNodes_ = new int[n];
+        int[] filled = Arrays.copyOf(cellStart_, (int) count);
+        for (int node = 0; node < n; node++) {
+            cellNodes_[filled[cellOf[node]]++] = node;
+        }
+    }
+
+    /*
+     * The nearest node not farther than maxDistance, with radius at least
+     * minRadius and not excluded, the one with the lowest index if there are
+     * more such nodes, NULL if there is none. Excluded can be null.
+     */
+    int nearest(double x, double y, double z, double maxDistance,
+            double minRadius, boolean[] excluded) {
+        int[] c = {index(x, 0), index(y, 1), index(z, 2)};
+        int rings = 0;
+        for (int i = 0; i < 3; i++) {
+            rings = Math.max(rings, Math.max(c[i], cells_[i] - 1 - c[i]));
+        }
+        int best = NULL;
+        double min = Double.POSITIVE_INFINITY;
+        for (int k = 0; k <= rings; k++) {
+            // cells of the ring k are at least k - 1 cells far along an axis
+            double bound = (k - 1) * cell_;
+            if (min < bound || maxDistance < bound) {
+                break;
+            }
+            for (int dz = -k; dz <= k; dz++) {
+                int cz = c[2] + dz;
+                if (cz < 0 || cells_[2] <= cz) {
+                    continue;
+                }
+                for (int dy = -k; dy <= k; dy++) {
+                    int cy = c[1] + dy;
+                    if (cy < 0 || cells_[1] <= cy) {
+                        continue;
+                    }
+                    // inside the ring only the cells at its ends
+                    int step = (k == Math.abs(dz) || k == Math.abs(dy))
+                            ? 1 : 2 * k;
+                    for (int dx = -k; dx <= k; dx += step) {
+                        int cx = c[0] + dx;
+                        if (cx < 0 || cells_[0] <= cx) {
+                            continue;
+                        }
+                        int cell = cell(cx, cy, cz);
+                        for (int i = cellStart_[cell];
+                                i < cellStart_[cell + 1]; i++) {
+                            int node = cellNodes_[i];
+                            if (radii_[node] < minRadius
+                                    || (null != excluded && excluded[node])) {
+                                continue;
+                            }
+                            double d = distance(node, x, y, z);
+                            if (d <= maxDistance && (d < min
+                                    || (d == min && node < best))) {
+                                best = node;
+                                min = d;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /*
+     * Nodes not farther than the distance with radius at least minRadius,
+     * ordered by index.
+     */
+    int[] within(double x, double y, double z, double distance,
+            double minRadius) {
+        int[] from = {index(x - distance, 0), index(y - distance, 1),
+            index(z - distance, 2)};
+        int[] to = {index(x + distance, 0), index(y + distance, 1),
+            index(z + distance, 2)};
+        int[] found = new int[16];
+        int count = 0;
+        for (int cz = from[2]; cz <= to[2]; cz++) {
+            for (int cy = from[1]; cy <= to[1]; cy++) {
+                for (int cx = from[0]; cx <= to[0]; cx++) {
+                    int cell = cell(cx, cy, cz);
+                    for (int i = cellStart_[cell]; i < cellStart_[cell + 1];
+                            i++) {
+                        int node = cellNodes_[i];
+                        if (minRadius <= radii_[node]
+                                && distance(node, x, y, z) <= distance) {
+                            if (found.length == count) {
+                                found = Arrays.copyOf(found, 2 * count);
+                            }
+                            found[count++] = node;
+                        }
+                    }
+                }
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    private double distance(int node, double x, double y, double z) {
+        double dx = points_[3 * node] - x;
+        double dy = points_[3 * node + 1] - y;
+        double dz = points_[3 * node + 2] - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /*
+     * Index of cell along axis i, coordinates outside of the grid fall into
+     * the border cells.
+     */
+    private int index(double x, int i) {
+        double c = Math.floor((x - lo_[i]) / cell_);
+        if (!(0 < c)) {
+            return 0;
+        }
+        return (int) Math.min(c, cells_[i] - 1);
+    }
+
+    private int cell(int x, int y, int z) {
+        return (z * cells_[1] + y) * cells_[0] + x;
+    }
+}
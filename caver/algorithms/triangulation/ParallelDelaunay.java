@@ -0,0 +1,714 @@
+package algorithms.triangulation;
+
+import algorithms.triangulation.qhull.FacetStore;
+import algorithms.triangulation.qhull.Predicates;
+import algorithms.triangulation.qhull.QuickHull4D;
+import algorithms.triangulation.qhull.Vertex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Delaunay tetrahedralization computed by a thread pool in blocks of a
+ * regular grid. Each block triangulates the points inside it together with a
+ * halo of surrounding points and keeps the stars of the points it owns, i.e.
+ * the tetrahedrons incident to them. The stars are final when no point
+ * outside of the halo lies inside a circumsphere of their tetrahedrons or
+ * beyond their faces on the convex hull of the block, which is tested
+ * exactly on the points near the halo. Otherwise the block is triangulated
+ * again with these points added, or with a halo twice as wide if there are
+ * too many of them or the test cannot decide.
+ *
+ * Ties are broken by the symbolic perturbation ordered by Vertex.index in
+ * all blocks, so the tetrahedrons are those computed by QuickHull4D for all
+ * the points, only their order differs. Each tetrahedron is kept by the
+ * owner of its first vertex.
+ */
+class ParallelDelaunay {
+
+    private static final int NULL = -1;
+    private static final int POINTS_PER_CELL = 8;
+    private static final int HALO_CELLS = 2; // initial width of halo
+    private static final int CHUNK = 4096; // tetrahedrons linked by a task
+    private static final double EPSILON = 1e-9;
+    private Vertex[] vertices_;
+    private double[] lo_ = new double[3]; // of the bounding box of points
+    private double[] hi_ = new double[3];
+    private double margin_; // of the floating point tests of distances
+    private double cell_; // length of an edge of grid cells
+    private int[] cells_ = new int[3]; // number of cells along the axes
+    private int[] cellOf_; // cell of each point
+    private int[] cellStart_; // points of cell c are cellPoints_[i] for
+    //                           cellStart_[c] <= i < cellStart_[c + 1]
+    private int[] cellPoints_;
+    private double[] cellBoxes_; // lo x, y, z, hi x, y, z of points of cells
+    private int blockCells_; // cells along an edge of a block
+    private int[] blocks_ = new int[3]; // number of blocks along the axes
+    private double[] blockBoxes_; // lo x, y, z, hi x, y, z of points of blocks
+
+    /*
+     * Vertices have four coordinates, the last is the lift, their data are
+     * set to their positions in the array. Blocks contain about blockSize
+     * points.
+     */
+    ParallelDelaunay(Vertex[] vertices, int blockSize) {
+        vertices_ = vertices;
+        int n = vertices.length;
+        for (int p = 0; p < n; p++) {
+            vertices[p].data = p;
+        }
+
+        Arrays.fill(lo_, Double.POSITIVE_INFINITY);
+        Arrays.fill(hi_, Double.NEGATIVE_INFINITY);
+        for (Vertex v : vertices) {
+            for (int i = 0; i < 3; i++) {
+                lo_[i] = Math.min(lo_[i], v.coordinates[i]);
+                hi_[i] = Math.max(hi_[i], v.coordinates[i]);
+            }
+        }
+        double extent = 0;
+        for (int i = 0; i < 3; i++) {
+            extent = Math.max(extent, hi_[i] - lo_[i]);
+        }
+        margin_ = EPSILON * Math.max(1, extent);
+        double volume = 1;
+        for (int i = 0; i < 3; i++) {
+            volume *= Math.max(hi_[i] - lo_[i], extent / n);
+        }
+        cell_ = Math.max(Math.cbrt(volume * POINTS_PER_CELL / n), margin_);
+        int count = 1;
+        for (int i = 0; i < 3; i++) {
+            cells_[i] = Math.max(1, (int) Math.ceil((hi_[i] - lo_[i]) / cell_));
+            count *= cells_[i];
+        }
+
+        cellOf_ = new int[n];
+        cellStart_ = new int[count + 1];
+        for (int p = 0; p < n; p++) {
+            double[] x = vertices[p].coordinates;
+            cellOf_[p] = cell(index(x[0], 0), index(x[1], 1), index(x[2], 2));
+            cellStart_[cellOf_[p] + 1]++;
+        }
+        for (int c = 0; c < count; c++) {
+            cellStart_[c + 1] += cellStart_[c];
+        }
+        cellPoints_ = new int[n];
+        int[] filled = Arrays.copyOf(cellStart_, count);
+        for (int p = 0; p < n; p++) {
+            cellPoints_[filled[cellOf_[p]]++] = p;
+        }
+
+        cellBoxes_ = emptyBoxes(count);
+        for (int p = 0; p < n; p++) {
+            extend(cellBoxes_, cellOf_[p], vertices[p].coordinates);
+        }
+
+        blockCells_ = Math.max(1, (int) Math.round(
+                Math.cbrt((double) blockSize / POINTS_PER_CELL)));
+        int blockCount = 1;
+        for (int i = 0; i < 3; i++) {
+            blocks_[i] = (cells_[i] + blockCells_ - 1) / blockCells_;
+            blockCount *= blocks_[i];
+        }
+        blockBoxes_ = emptyBoxes(blockCount);
+        for (int p = 0; p < n; p++) {
+            extend(blockBoxes_, blockOf(p), vertices[p].coordinates);
+        }
+    }
+
+    int countBlocks() {
+        return blocks_[0] * blocks_[1] * blocks_[2];
+    }
+
+    DelaunayMesh run(ForkJoinPool pool) {
+        int[][] stars = new int[countBlocks()][];
+        pool.invoke(new Blocks(stars, 0, stars.length));
+
+        int count = 0;
+        for (int[] s : stars) {
+            count += s.length;
+        }
+        int[] corners = new int[count];
+        count = 0;
+        for (int[] s : stars) {
+            System.arraycopy(s, 0, corners, count, s.length);
+            count += s.length;
+        }
+        stars = null;
+
+        int[] neighbors = new int[corners.length];
+        Incidence incidence = new Incidence(corners);
+        pool.invoke(new Linking(corners, neighbors, incidence, 0,
+                corners.length / 4));
+        return DelaunayMesh.create(vertices_, corners, neighbors);
+    }
+
+    /*
+     * Corners of the tetrahedrons kept by the block.
+     */
+    private int[] triangulate(int block) {
+        if (blockBoxes_[6 * block] > blockBoxes_[6 * block + 3]) {
+            return new int[0]; // no points
+        }
+        Block b = new Block(block);
+        while (true) {
+            Vertex[] points = b.collect();
+            if (points.length < 5 && !b.all_) {
+                b.halo_ *= 2;
+                continue;
+            }
+            FacetStore faces = new QuickHull4D().build4D(points);
+            DelaunayMesh mesh = DelaunayMesh.create(faces, points);
+            faces = null;
+
+            int[] kept = b.keep(mesh);
+            if (null != kept) {
+                return kept;
+            }
+        }
+    }
+
+    /*
+     * Points triangulated for a block, the points inside a box around it and
+     * points found inside circumspheres or beyond the faces of its
+     * tetrahedrons in the previous rounds.
+     */
+    private class Block {
+
+        private int block_;
+        private int[] position_ = new int[3]; // in the grid of blocks
+        private double halo_ = HALO_CELLS * cell_;
+        private double[] box_ = new double[6]; // lo x, y, z, hi x, y, z
+        private boolean all_; // the box covers all points
+        private Set<Integer> extra_ = new HashSet<Integer>();
+        private int inBox_; // number of points inside the box, the halo is
+        //                     doubled rather than adding more points
+
+        Block(int block) {
+            block_ = block;
+            position_[2] = block / (blocks_[0] * blocks_[1]);
+            position_[1] = block / blocks_[0] % blocks_[1];
+            position_[0] = block % blocks_[0];
+        }
+
+        /*
+         * Copies of the points to triangulate in the order of the input, like
+         * the serial construction. The construction marks the points, the
+         * blocks triangulated concurrently cannot share them.
+         */
+        Vertex[] collect() {
+            // infinite where it covers all points
+            all_ = true;
+            for (int i = 0; i < 3; i++) {
+                box_[i] = lo_[i] + position_[i] * blockCells_ * cell_ - halo_;
+                box_[i + 3] = lo_[i] + Math.min(
+                        (position_[i] + 1) * blockCells_, cells_[i]) * cell_
+                        + halo_;
+                if (box_[i] <= lo_[i]) {
+                    box_[i] = Double.NEGATIVE_INFINITY;
+                } else {
+                    all_ = false;
+                }
+                if (hi_[i] <= box_[i + 3]) {
+                    box_[i + 3] = Double.POSITIVE_INFINITY;
+                } else {
+                    all_ = false;
+                }
+            }
+
+            List<Vertex> local = new ArrayList<Vertex>();
+            int[] from = new int[3];
+            int[] to = new int[3];
+            for (int i = 0; i < 3; i++) {
+                from[i] = index(box_[i], i);
+                to[i] = index(box_[i + 3], i);
+            }
+            for (int z = from[2]; z <= to[2]; z++) {
+                for (int y = from[1]; y <= to[1]; y++) {
+                    for (int x = from[0]; x <= to[0]; x++) {
+                        int c = cell(x, y, z);
+                        for (int i = cellStart_[c]; i < cellStart_[c + 1];
+                                i++) {
+                            int p = cellPoints_[i];
+                            if (isInBox(p) || block_ == blockOf(p)) {
+                                local.add(vertices_[p]);
+                            }
+                        }
+                    }
+                }
+            }
+            inBox_ = local.size();
+            for (int p : extra_) {
+                if (!isInBox(p) && block_ != blockOf(p)) {
+                    local.add(vertices_[p]);
+                }
+            }
+
+            Vertex[] points = local.toArray(new Vertex[local.size()]);
+            Arrays.sort(points, new Comparator<Vertex>() {
+
+                @Override
+                public int compare(Vertex a, Vertex b) {
+                    return a.data < b.data ? -1 : (a.data == b.data ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < points.length; i++) {
+                double[] x = points[i].coordinates;
+                Vertex v = new Vertex(x[0], x[1], x[2], x[3]);
+                v.index = points[i].index;
+                v.data = points[i].data;
+                points[i] = v;
+            }
+            return points;
+        }
+
+        /*
+         * Corners of the tetrahedrons with the first vertex owned by the
+         * block, null if a star of an owned point is not final. Then the
+         * points which prevent it are added or the halo is doubled if they
+         * are not known.
+         */
+        int[] keep(DelaunayMesh mesh) {
+            int[] kept = new int[64];
+            int count = 0;
+            Set<Integer> found = new HashSet<Integer>();
+            boolean unknown = false;
+            for (int t = 0; t < mesh.size(); t++) {
+                int first = Integer.MAX_VALUE;
+                boolean owned = false;
+                for (int k = 0; k < 4; k++) {
+                    int p = mesh.getVertex(t, k).data;
+                    first = Math.min(first, p);
+                    owned |= block_ == blockOf(p);
+                }
+                if (owned && !all_ && !isFinal(mesh, t, found)) {
+                    unknown = true;
+                }
+                if (block_ == blockOf(first)) {
+                    if (kept.length == count) {
+                        kept = Arrays.copyOf(kept, 2 * count);
+                    }
+                    for (int k = 0; k < 4; k++) {
+                        kept[count++] = mesh.getVertex(t, k).data;
+                    }
+                }
+            }
+            if (unknown || inBox_ < extra_.size() + found.size()) {
+                halo_ *= 2;
+                extra_.clear();
+                return null;
+            } else if (!found.isEmpty()) {
+                extra_.addAll(found);
+                return null;
+            }
+            return Arrays.copyOf(kept, count);
+        }
+
+        /*
+         * Adds the points which are not triangulated and lie inside the
+         * circumsphere of the tetrahedron or beyond its faces on the convex
+         * hull. The tetrahedron is in the triangulation of all points if
+         * there are none. Returns false if it cannot be decided.
+         */
+        private boolean isFinal(DelaunayMesh mesh, int t, Set<Integer> found) {
+            Vertex[] v = new Vertex[4];
+            for (int k = 0; k < 4; k++) {
+                v[k] = mesh.getVertex(t, k);
+            }
+            double[] center = new double[3];
+            double r = circumsphere(v, center);
+            if (Double.isNaN(r) || Double.isInfinite(r)) {
+                return false;
+            }
+
+            for (int k = 0; k < 4; k++) {
+                if (NULL != mesh.getNeighbor(t, k)) {
+                    continue;
+                }
+                Vertex[] f = new Vertex[3];
+                for (int i = 0, j = 0; i < 4; i++) {
+                    if (i != k) {
+                        f[j++] = v[i];
+                    }
+                }
+                double[] normal = normal(f);
+                double[] a = f[0].coordinates;
+                double side = dot(normal, v[k].coordinates) - dot(normal, a);
+                if (Math.abs(side) <= margin_) {
+                    return false; // too flat to tell the sides apart
+                }
+                int inside = 0 < side ? 1 : -1;
+                if (addBeyond(f, v[k], inside, found)) {
+                    return true;
+                }
+
+                // no point is beyond the face, the part of the circumsphere
+                // before it is inside the sphere around the circumcircle of
+                // the face if the center is beyond
+                double distance = inside
+                        * (dot(normal, a) - dot(normal, center));
+                if (0 < distance) {
+                    r = Math.sqrt(Math.max(0, r * r - distance * distance));
+                    for (int i = 0; i < 3; i++) {
+                        center[i] += inside * distance * normal[i];
+                    }
+                }
+            }
+
+            r += margin_ + EPSILON * r;
+            boolean inBox = true;
+            for (int i = 0; i < 3; i++) {
+                inBox &= box_[i] < center[i] - r && center[i] + r < box_[i + 3];
+            }
+            if (inBox) {
+                return true;
+            }
+
+            int[] from = new int[3];
+            int[] to = new int[3];
+            for (int i = 0; i < 3; i++) {
+                from[i] = index(center[i] - r, i);
+                to[i] = index(center[i] + r, i);
+            }
+            for (int z = from[2]; z <= to[2]; z++) {
+                for (int y = from[1]; y <= to[1]; y++) {
+                    for (int x = from[0]; x <= to[0]; x++) {
+                        int c = cell(x, y, z);
+                        if (!intersects(cellBoxes_, c, center, r)
+                                || isInside(cellBoxes_, c, box_)) {
+                            continue;
+                        }
+                        for (int i = cellStart_[c]; i < cellStart_[c + 1];
+                                i++) {
+                            int p = cellPoints_[i];
+                            if (!isLocal(p) && 0 < Predicates.orient(
+                                    v[0], v[1], v[2], v[3], vertices_[p])) {
+                                found.add(p);
+                            }
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /*
+         * Adds the points which are not triangulated and lie beyond the face
+         * or on its plane, returns if there are any. The opposite corner is
+         * on the side of the normal times inside.
+         */
+        private boolean addBeyond(Vertex[] f, Vertex opposite, int inside,
+                Set<Integer> found) {
+            boolean any = false;
+            double[] normal = normal(f);
+            for (int i = 0; i < 3; i++) {
+                normal[i] *= -inside;
+            }
+            double offset = dot(normal, f[0].coordinates) - margin_;
+            int behind = Predicates.orient3d(f[0].coordinates,
+                    f[1].coordinates, f[2].coordinates, opposite.coordinates);
+            for (int b = 0; b < countBlocks(); b++) {
+                if (!isReached(blockBoxes_, b, normal, offset)
+                        || isInside(blockBoxes_, b, box_)) {
+                    continue;
+                }
+                int[] c0 = new int[3];
+                int[] c1 = new int[3];
+                for (int i = 0; i < 3; i++) {
+                    int bi = (0 == i ? b : (1 == i ? b / blocks_[0]
+                            : b / (blocks_[0] * blocks_[1]))) % blocks_[i];
+                    c0[i] = bi * blockCells_;
+                    c1[i] = Math.min(c0[i] + blockCells_, cells_[i]) - 1;
+                }
+                for (int z = c0[2]; z <= c1[2]; z++) {
+                    for (int y = c0[1]; y <= c1[1]; y++) {
+                        for (int x = c0[0]; x <= c1[0]; x++) {
+                            int c = cell(x, y, z);
+                            if (!isReached(cellBoxes_, c, normal, offset)) {
+                                continue;
+                            }
+                            for (int i = cellStart_[c];
+                                    i < cellStart_[c + 1]; i++) {
+                                int p = cellPoints_[i];
+                                if (!isLocal(p) && behind * Predicates.orient3d(
+                                        f[0].coordinates, f[1].coordinates,
+                                        f[2].coordinates,
+                                        vertices_[p].coordinates) <= 0) {
+                                    found.add(p);
+                                    any = true;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return any;
+        }
+
+        private boolean isInBox(int p) {
+            double[] x = vertices_[p].coordinates;
+            for (int i = 0; i < 3; i++) {
+                if (x[i] < box_[i] || box_[i + 3] < x[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isLocal(int p) {
+            return isInBox(p) || block_ == blockOf(p) || extra_.contains(p);
+        }
+    }
+
+    /*
+     * Radius of the sphere through the points, its center is stored.
+     */
+    private static double circumsphere(Vertex[] v, double[] center) {
+        double[] a = v[0].coordinates;
+        double[][] e = new double[3][3];
+        double[] l = new double[3];
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < 3; i++) {
+                e[k][i] = v[k + 1].coordinates[i] - a[i];
+            }
+            l[k] = dot(e[k], e[k]);
+        }
+        double[] c01 = cross(e[0], e[1]);
+        double[] c12 = cross(e[1], e[2]);
+        double[] c20 = cross(e[2], e[0]);
+        double denominator = 2 * dot(e[0], c12);
+        for (int i = 0; i < 3; i++) {
+            double d = (l[0] * c12[i] + l[1] * c20[i] + l[2] * c01[i])
+                    / denominator;
+            center[i] = a[i] + d;
+        }
+        double r = 0;
+        for (int i = 0; i < 3; i++) {
+            r += (center[i] - a[i]) * (center[i] - a[i]);
+        }
+        return Math.sqrt(r);
+    }
+
+    private static double[] normal(Vertex[] f) {
+        double[] u = new double[3];
+        double[] w = new double[3];
+        for (int i = 0; i < 3; i++) {
+            u[i] = f[1].coordinates[i] - f[0].coordinates[i];
+            w[i] = f[2].coordinates[i] - f[0].coordinates[i];
+        }
+        double[] n = cross(u, w);
+        double length = Math.sqrt(dot(n, n));
+        for (int i = 0; i < 3; i++) {
+            n[i] /= length;
+        }
+        return n;
+    }
+
+    private static double[] cross(double[] u, double[] w) {
+        return new double[]{
+                    u[1] * w[2] - u[2] * w[1],
+                    u[2] * w[0] - u[0] * w[2],
+                    u[0] * w[1] - u[1] * w[0]};
+    }
+
+    private static double dot(double[] u, double[] w) {
+        return u[0] * w[0] + u[1] * w[1] + u[2] * w[2];
+    }
+
+    /*
+     * Tests if the box i can contain points beyond the plane.
+     */
+    private static boolean isReached(double[] boxes, int i, double[] normal,
+            double offset) {
+        if (boxes[6 * i] > boxes[6 * i + 3]) {
+            return false;
+        }
+        double max = 0;
+        for (int k = 0; k < 3; k++) {
+            max += Math.max(normal[k] * boxes[6 * i + k],
+                    normal[k] * boxes[6 * i + k + 3]);
+        }
+        return offset <= max;
+    }
+
+    private static boolean isInside(double[] boxes, int i, double[] box) {
+        for (int k = 0; k < 3; k++) {
+            if (boxes[6 * i + k] < box[k] || box[k + 3] < boxes[6 * i + k + 3]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean intersects(double[] boxes, int i, double[] center,
+            double r) {
+        double d = 0;
+        for (int k = 0; k < 3; k++) {
+            double below = boxes[6 * i + k] - center[k];
+            double above = center[k] - boxes[6 * i + k + 3];
+            double g = Math.max(0, Math.max(below, above));
+            d += g * g;
+        }
+        return d <= r * r;
+    }
+
+    private static double[] emptyBoxes(int count) {
+        double[] boxes = new double[6 * count];
+        for (int i = 0; i < count; i++) {
+            Arrays.fill(boxes, 6 * i, 6 * i + 3, Double.POSITIVE_INFINITY);
+            Arrays.fill(boxes, 6 * i + 3, 6 * i + 6, Double.NEGATIVE_INFINITY);
+        }
+        return boxes;
+    }
+
+    private static void extend(double[] boxes, int i, double[] x) {
+        for (int k = 0; k < 3; k++) {
+            boxes[6 * i + k] = Math.min(boxes[6 * i + k], x[k]);
+            boxes[6 * i + k + 3] = Math.max(boxes[6 * i + k + 3], x[k]);
+        }
+    }
+
+    private int index(double x, int axis) {
+        if (x <= lo_[axis]) {
+            return 0;
+        }
+        double i = Math.floor((x - lo_[axis]) / cell_);
+        return (int) Math.min(i, cells_[axis] - 1);
+    }
+
+    private int cell(int x, int y, int z) {
+        return (z * cells_[1] + y) * cells_[0] + x;
+    }
+
+    private int blockOf(int p) {
+        int c = cellOf_[p];
+        int x = c % cells_[0] / blockCells_;
+        int y = c / cells_[0] % cells_[1] / blockCells_;
+        int z = c / (cells_[0] * cells_[1]) / blockCells_;
+        return (z * blocks_[1] + y) * blocks_[0] + x;
+    }
+
+    /*
+     * Tetrahedrons incident to each point.
+     */
+    private static class Incidence {
+
+        int[] start;
+        int[] tetrahedrons;
+
+        Incidence(int[] corners) {
+            int n = 0;
+            for (int p : corners) {
+                n = Math.max(n, p + 1);
+            }
+            start = new int[n + 1];
+            for (int p : corners) {
+                start[p + 1]++;
+            }
+            for (int p = 0; p < n; p++) {
+                start[p + 1] += start[p];
+            }
+            tetrahedrons = new int[corners.length];
+            int[] filled = Arrays.copyOf(start, n);
+            for (int i = 0; i < corners.length; i++) {
+                tetrahedrons[filled[corners[i]]++] = i / 4;
+            }
+        }
+    }
+
+    /*
+     * Triangulates the blocks from..to-1.
+     */
+    private class Blocks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private int[][] stars_;
+        private int from_;
+        private int to_;
+
+        Blocks(int[][] stars, int from, int to) {
+            stars_ = stars;
+            from_ = from;
+            to_ = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (1 == to_ - from_) {
+                stars_[from_] = triangulate(from_);
+            } else {
+                int middle = (from_ + to_) / 2;
+                invokeAll(new Blocks(stars_, from_, middle),
+                        new Blocks(stars_, middle, to_));
+            }
+        }
+    }
+
+    /*
+     * Finds the neighbors of tetrahedrons from..to-1, the neighbor opposite
+     * to a corner is the other tetrahedron incident to the rest of corners.
+     */
+    private static class Linking extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private int[] corners_;
+        private int[] neighbors_;
+        private Incidence incidence_;
+        private int from_;
+        private int to_;
+
+        Linking(int[] corners, int[] neighbors, Incidence incidence, int from,
+                int to) {
+            corners_ = corners;
+            neighbors_ = neighbors;
+            incidence_ = incidence;
+            from_ = from;
+            to_ = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to_ - from_ <= CHUNK) {
+                for (int t = from_; t < to_; t++) {
+                    for (int k = 0; k < 4; k++) {
+                        neighbors_[4 * t + k] = find(t, k);
+                    }
+                }
+            } else {
+                int middle = (from_ + to_) / 2;
+                invokeAll(new Linking(corners_, neighbors_, incidence_, from_,
+                        middle),
+                        new Linking(corners_, neighbors_, incidence_, middle,
+                        to_));
+            }
+        }
+
+        private int find(int t, int k) {
+            int a = corners_[4 * t + (k + 1) % 4];
+            int b = corners_[4 * t + (k + 2) % 4];
+            int c = corners_[4 * t + (k + 3) % 4];
+            for (int i = incidence_.start[a]; i < incidence_.start[a + 1];
+                    i++) {
+                int u = incidence_.tetrahedrons[i];
+                if (u != t && contains(u, b) && contains(u, c)) {
+                    return u;
+                }
+            }
+            return NULL;
+        }
+
+        private boolean contains(int t, int p) {
+            for (int k = 0; k < 4; k++) {
+                if (p == corners_[4 * t + k]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package algorithms.triangulation;
+
+import geometry.primitives.NumberedSphere;
+import geometry.primitives.Point;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/*
+ * Spatial orderings of spheres before triangulation. Spheres close in space
+ * get close positions in the order, and therefore also in memory, keeping
+ * the conflict lists and horizons of the convex hull construction local.
+ */
+public class SpatialOrder {
+
+    private static final int BITS = 16; // grid resolution of Hilbert curve
+
+    /*
+     * Sorts the spheres along a 3D Hilbert curve passing their bounding box.
+     */
+    public static void hilbert(NumberedSphere[] spheres) {
+        hilbert(spheres, 0, spheres.length);
+    }
+
+    /*
+     * Biased randomized insertion order: spheres are randomly divided into
+     * rounds, each round roughly twice as large as the previous one, and
+     * each round is sorted along a Hilbert curve.
+     */
+    public static void brio(NumberedSphere[] spheres, Random random) {
+        int n = spheres.length;
+        int rounds = 1;
+        while ((1 << rounds) < n) {
+            rounds++;
+        }
+        final int[] round = new int[n];
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            int r = 0;
+            while (r < rounds - 1 && random.nextBoolean()) {
+                r++;
+            }
+            // the last round holds about half of spheres
+            round[i] = rounds - 1 - r;
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                return round[a] - round[b];
+            }
+        });
+        NumberedSphere[] copy = spheres.clone();
+        for (int i = 0; i < n; i++) {
+            spheres[i] = copy[order[i]];
+        }
+        int from = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i == n || round[order[i]] != round[order[from]]) {
+                hilbert(spheres, from, i);
+                from = i;
+            }
+        }
+    }
+
+    private static void hilbert(NumberedSphere[] spheres, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = from; i < to; i++) {
+            double[] c = spheres[i].getS().getCoordinates();
+            for (int d = 0; d < 3; d++) {
+                min[d] = Math.min(min[d], c[d]);
+                max[d] = Math.max(max[d], c[d]);
+            }
+        }
+        double size = Math.max(max[0] - min[0],
+                Math.max(max[1] - min[1], max[2] - min[2]));
+        double scale = 0 < size ? ((1 << BITS) - 1) / size : 0;
+
+        final long[] keys = new long[to - from];
+        Integer[] order = new Integer[to - from];
+        int[] x = new int[3];
+        for (int i = from; i < to; i++) {
+            Point p = spheres[i].getS();
+            x[0] = (int) ((p.getX() - min[0]) * scale);
+            x[1] = (int) ((p.getY() - min[1]) * scale);
+            x[2] = (int) ((p.getZ() - min[2]) * scale);
+            keys[i - from] = index(x);
+            order[i - from] = i - from;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keys[a] < keys[b] ? -1 : (keys[a] == keys[b] ? 0 : 1);
+            }
+        });
+        NumberedSphere[] copy = Arrays.copyOfRange(spheres, from, to);
+        for (int i = 0; i < order.length; i++) {
+            spheres[from + i] = copy[order[i]];
+        }
+    }
+
+    /*
+     * Position on Hilbert curve of a grid point, by J. Skilling, Programming
+     * the Hilbert curve, AIP Conf. Proc. 707, 2004. Modifies x.
+     */
+    private static long index(int[] x) {
+        int n = x.length;
+        int m = 1 << (BITS - 1);
+        for (int q = m; q > 1; q >>= 1) {
+            int p = q - 1;
+            for (int i = 0; i < n; i++) {
+                if (0 != (x[i] & q)) {
+                    x[0] ^= p;
+                } else {
+                    int t = (x[0] ^ x[i]) & p;
+                    x[0] ^= t;
+                    x[i] ^= t;
+                }
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            x[i] ^= x[i - 1];
+        }
+        int t = 0;
+        for (int q = m; q > 1; q >>= 1) {
+            if (0 != (x[n - 1] & q)) {
+                t ^= q - 1;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] ^= t;
+        }
+        long h = 0;
+        for (int b = BITS - 1; 0 <= b; b--) {
+            for (int i = 0; i < n; i++) {
+                h = (h << 1) | ((x[i] >> b) & 1);
+            }
+        }
+        return h;
+    }
+}
@@ -1,7 +1,6 @@
 package algorithms.triangulation;
 
-import algorithms.triangulation.qhull.Facet;
-import algorithms.triangulation.qhull.OptimizedVector;
+import algorithms.triangulation.qhull.FacetStore;
 import algorithms.triangulation.qhull.QuickHull4D;
 import algorithms.triangulation.qhull.Vertex;
 import caver.CalculationSettings;
@@ -11,6 +10,7 @@ import geometry.primitives.NumberedSphere;
 import geometry.primitives.Point;
 import geometry.primitives.Sphere;
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,169 +22,382 @@ public class SphereSpaceTriangulator {
 
     private static int NULL = -1;
     private CalculationSettings cs_;
+    private DelaunayMesh previous_; // of the previous snapshot
 
     public SphereSpaceTriangulator(CalculationSettings cs) {
         cs_ = cs;
     }
 
     public VoronoiDiagram triangulate(SortedMap<Integer, NumberedSphere> spheres) {
-
-        Printer.println("Going to triangulate " + spheres.size() + " points.");
-
         Clock.start("voronoi diagram construction: procedure");
-        Clock.start("voronoi diagram construction: 1. pre");
+        VoronoiDiagram vd = createDiagram(computeGeometry(spheres));
+        Clock.stop("voronoi diagram construction: procedure");
+        return vd;
+    }
 
-        List<Tetrahedron> tetrahedrons_ = new ArrayList<Tetrahedron>();
+    /*
+     * Nodes, gates and limiting spheres of the Voronoi diagram of the spheres,
+     * independent of the probe.
+     */
+    public VoronoiGeometry computeGeometry(
+            SortedMap<Integer, NumberedSphere> spheres) {
 
-        Vertex[] vertices = new Vertex[spheres.size()];
+        Printer.println("Going to triangulate " + spheres.size() + " points.");
 
-        Iterator<NumberedSphere> it = spheres.values().iterator();
-        for (int i = 0; i < spheres.size(); i++) {
-            NumberedSphere s = it.next();
-            vertices[i] = new Vertex(s.getS().getX(), s.getS().getY(),
-                    s.getS().getZ());
-            vertices[i].addDimension();
-            vertices[i].index = s.getId();
+        DelaunayMesh mesh = null;
+        if (null != previous_) {
+            mesh = update(previous_, spheres);
+            previous_ = null;
         }
-
-        Set<Integer> numbers = new HashSet<Integer>();
-        for (Vertex v : vertices) {
-            assert !numbers.contains(v.index) : v.index;
-            numbers.add(v.index);
+        if (null == mesh) {
+            mesh = build(spheres);
+        }
+        if (cs_.isIncrementalTriangulation()) {
+            previous_ = mesh;
         }
-        Clock.stop("voronoi diagram construction: 1. pre");
-        Clock.start("voronoi diagram construction: 2. tri");
 
-        QuickHull4D chull4 = new QuickHull4D();
-        OptimizedVector faces = chull4.build4D(vertices);
-        
-        chull4 = null;
-        int j = 0;
-        Clock.stop("voronoi diagram construction: 2. tri");
         Clock.start("voronoi diagram construction: 3. tetra");
+        List<Tetrahedron> tetrahedrons_ = new ArrayList<Tetrahedron>();
+        Logger.getLogger("caver").log(Level.FINE, "Tetrahedrons: {0}", mesh.size());
 
-        Logger.getLogger("caver").log(Level.FINE, "Tetrahedrons: {0}", faces.elementCount);
-
-        for (int i = 0; i < faces.elementCount; i++) {
-            Facet f = (Facet) faces.elementAt(i);
-            if (f.isDiscarded() || f.normalW > 0.0f) {
-                f.index = NULL;
+        int[] nodes = new int[mesh.size()];
+        Arrays.fill(nodes, NULL);
+        int j = 0;
+        for (int t = 0; t < mesh.size(); t++) {
+            if (mesh.isDead(t)) {
                 continue;
             }
-            f.index = j;
+            nodes[t] = j;
 
             NumberedSphere[] tetraSpheres = new NumberedSphere[4];
             for (int k = 0; k < 4; k++) {
-                tetraSpheres[k] = spheres.get(f.corner[k].index);
+                tetraSpheres[k] = spheres.get(mesh.getVertex(t, k).index);
             }
 
-            Tetrahedron t = new Tetrahedron(j, tetraSpheres);
-            tetrahedrons_.add(t);
+            Tetrahedron tetrahedron = new Tetrahedron(j, tetraSpheres);
+            tetrahedrons_.add(tetrahedron);
             j++;
         }
 
-        spheres = null;
         int count = j;
-        Clock.stop("voronoi diagram construction: 3. tetra");
-        Clock.start("voronoi diagram construction: 4. vd cr");
-        j = 0;
-        Printer.println("Creating Voronoi diagram with " + count + " vertices.");
 
-        VoronoiDiagram vd = VoronoiDiagram.create(count);
+        VoronoiGeometry g = new VoronoiGeometry(count, spheres.lastKey() + 1);
 
-        Sphere[] greatest = new Sphere[count];
-        Clock.stop("voronoi diagram construction: 4. vd cr");
-        Clock.start("voronoi diagram construction: 4b. greatest");
-        for (int i = 0; i < faces.elementCount; i++) {
-            Facet f = (Facet) faces.elementAt(i);
-            if (NULL == f.index) {
+        // neighbor k of tetrahedron i is neighbours[4 * i + k], NULL if
+        // there is no Voronoi edge between them, it shares corners k, k + 1
+        // and k + 2 with i
+        int[] neighbours = g.neighbours_;
+        for (int t = 0; t < mesh.size(); t++) {
+            int i = nodes[t];
+            if (NULL == i) {
                 continue;
             }
+            for (int k = 0; k < 4; k++) {
+                int n = mesh.getNeighbor(t, (k + 3) % 4);
+                neighbours[4 * i + k] = NULL == n ? NULL : nodes[n];
+            }
+        }
+        mesh = null;
+        nodes = null;
 
-            Tetrahedron t = tetrahedrons_.get(j);
-            greatest[j] = t.getGreatestSphere();
-            vd.setPoint(f.index, greatest[j]);
-            j++;
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < 4; k++) {
+                int n2 = neighbours[4 * i + k];
+                g.limiting_[4 * i + k] = NULL != n2 && i < n2
+                        ? limitingSphere(tetrahedrons_.get(i),
+                        tetrahedrons_.get(n2)) : NULL;
+            }
+        }
+
+        Clock.stop("voronoi diagram construction: 3. tetra");
+        Clock.start("voronoi diagram construction: 4. vd cr");
+        for (NumberedSphere s : spheres.values()) {
+            g.setSphere(s.getId(), s.getSphere());
+        }
+        Clock.stop("voronoi diagram construction: 4. vd cr");
+
+        Clock.start("voronoi diagram construction: 4b. greatest");
+        for (j = 0; j < count; j++) {
+            g.setNode(j, tetrahedrons_.get(j).getGreatestSphere());
         }
         Clock.stop("voronoi diagram construction: 4b. greatest");
+        return g;
+    }
+
+    /*
+     * Voronoi diagram with the edges blocked for the probe and weighted by
+     * the cost function.
+     */
+    public VoronoiDiagram createDiagram(VoronoiGeometry g) {
+        int count = g.size();
+        Printer.println("Creating Voronoi diagram with " + count + " vertices.");
+
+        VoronoiDiagram vd = VoronoiDiagram.create(count, g.countSpheres(),
+                cs_.getPassingFunction());
+        for (int id = 0; id < g.countSpheres(); id++) {
+            vd.setLimitingSphere(id, g.getSphere(id));
+        }
+        Sphere[] greatest = new Sphere[count];
+        for (int j = 0; j < count; j++) {
+            greatest[j] = g.getNode(j);
+            vd.setPoint(j, greatest[j]);
+        }
 
         Clock.start("voronoi diagram construction: 5. gates");
 
-        j = 0;
+        Segments segments = new Segments(count);
+        if (1 < cs_.getNumberOfThreads()) {
+            cs_.getThreadPool().invoke(new GateConstruction(g, greatest,
+                    segments, 0, count));
+        } else {
+            createSegments(g, greatest, segments, 0, count);
+        }
 
-        for (int i = 0; i < faces.elementCount; i++) {
+        // connecting in the order of tetrahedrons, independently on how the
+        // segments were computed
+        int[] neighbours = g.neighbours_;
+        for (int i = 0; i < count; i++) {
+            for (int k = 0; k < 4; k++) {
+                int gate = 4 * i + k;
+                if (segments.created[gate]) {
+                    int n2 = neighbours[gate];
+                    vd.connect(i, n2, segments.weights[gate],
+                            segments.bottlenecks[gate],
+                            segments.limiting[gate]);
+                    vd.connect(n2, i, segments.weights[gate],
+                            segments.bottlenecks[gate],
+                            segments.limiting[gate]);
+                }
+            }
+        }
+
+        Clock.stop("voronoi diagram construction: 5. gates");
+        return vd;
+    }
 
-            Facet f1 = (Facet) faces.elementAt(i);
+    /*
+     * Delaunay triangulation as the lower convex hull of the points lifted
+     * to the paraboloid.
+     */
+    private DelaunayMesh build(SortedMap<Integer, NumberedSphere> spheres) {
+        Clock.start("voronoi diagram construction: 1. pre");
 
-            if (NULL == f1.index) {
-                continue;
+        Vertex[] vertices = new Vertex[spheres.size()];
+
+        NumberedSphere[] ordered = spheres.values().toArray(
+                new NumberedSphere[spheres.size()]);
+        switch (cs_.getTriangulationOrder()) {
+            case HILBERT:
+                SpatialOrder.hilbert(ordered);
+                break;
+            case BRIO:
+                SpatialOrder.brio(ordered, new Random(ordered.length));
+                break;
+        }
+        for (int i = 0; i < ordered.length; i++) {
+            NumberedSphere s = ordered[i];
+            vertices[i] = new Vertex(s.getS().getX(), s.getS().getY(),
+                    s.getS().getZ());
+            vertices[i].addDimension();
+            vertices[i].index = s.getId();
+        }
+
+        ordered = null;
+
+        Set<Integer> numbers = new HashSet<Integer>();
+        for (Vertex v : vertices) {
+            assert !numbers.contains(v.index) : v.index;
+            numbers.add(v.index);
+        }
+        Clock.stop("voronoi diagram construction: 1. pre");
+        Clock.start("voronoi diagram construction: 2. tri");
+
+        DelaunayMesh mesh = null;
+        int blockSize = cs_.getParallelTriangulationBlockSize();
+        if (0 < blockSize && blockSize < vertices.length) {
+            ParallelDelaunay parallel = new ParallelDelaunay(vertices,
+                    blockSize);
+            if (1 < parallel.countBlocks()) {
+                Printer.println("Triangulating in " + parallel.countBlocks()
+                        + " blocks.");
+                mesh = parallel.run(cs_.getThreadPool());
             }
+        }
+        if (null == mesh) {
+            QuickHull4D chull4 = new QuickHull4D();
+            FacetStore faces = chull4.build4D(vertices);
+            mesh = DelaunayMesh.create(faces, vertices);
+        }
 
-            Tetrahedron t1 = tetrahedrons_.get(j);
-            for (int k = 0; k < 4; k++) {
+        Clock.stop("voronoi diagram construction: 2. tri");
+        return mesh;
+    }
 
-                Facet f2 = f1.neighbor[k];
+    /*
+     * Moves the points of the triangulation of the previous snapshot to their
+     * new positions, null if the set of points differs or if the update
+     * fails.
+     */
+    private DelaunayMesh update(DelaunayMesh mesh,
+            SortedMap<Integer, NumberedSphere> spheres) {
+        Vertex[] vertices = mesh.getVertices();
+        if (vertices.length != spheres.size()) {
+            return null;
+        }
+        double[] target = new double[3 * vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            NumberedSphere s = spheres.get(vertices[i].index);
+            if (null == s) {
+                return null;
+            }
+            target[3 * i] = s.getS().getX();
+            target[3 * i + 1] = s.getS().getY();
+            target[3 * i + 2] = s.getS().getZ();
+        }
+        Clock.start("voronoi diagram construction: 2. update");
+        boolean updated = mesh.relocate(target,
+                cs_.getIncrementalTriangulationMaxInvalid());
+        Clock.stop("voronoi diagram construction: 2. update");
+        if (updated) {
+            Printer.println("Triangulation updated by " + mesh.getFlips()
+                    + " flips.");
+            return mesh;
+        } else {
+            Printer.println("Triangulation could not be updated, "
+                    + "triangulating from scratch.");
+            return null;
+        }
+    }
 
-                if (f2.normalW < 0.0f && f1.index < f2.index) { // geometry && undirected edges
-                    Tetrahedron t2 = tetrahedrons_.get(f2.index);
+    /*
+     * Weights, bottleneck radii and ids of limiting spheres of Voronoi edges,
+     * by gates as the neighbours, limiting is NULL for blocked edges.
+     */
+    private static class Segments {
+
+        boolean[] created;
+        double[] weights;
+        double[] bottlenecks;
+        int[] limiting;
+
+        Segments(int count) {
+            created = new boolean[4 * count];
+            weights = new double[4 * count];
+            bottlenecks = new double[4 * count];
+            limiting = new int[4 * count];
+        }
 
-                    Sphere s1 = greatest[f1.index]; // widest point A
-                    Sphere s2 = greatest[f2.index]; // widest point B
+        void set(int gate, VE segment, int limitingId) {
+            created[gate] = true;
+            weights[gate] = segment.getWeight();
+            bottlenecks[gate] = segment.getBottleneck().getR();
+            limiting[gate] = limitingId;
+        }
+    }
 
-                    // defines width in every point of line AB
-                    NumberedSphere[] intersection = t2.intersection(t1);
+    /*
+     * Id of the sphere limiting the Voronoi edge between the tetrahedrons,
+     * i.e. the greatest of their common spheres.
+     */
+    private int limitingSphere(Tetrahedron t1, Tetrahedron t2) {
+        // defines width in every point of line AB
+        NumberedSphere[] intersection = t2.intersection(t1);
+
+        if (cs_.isAdmin() && intersection.length > 3) {
+            String ids = "";
+            for (NumberedSphere s : t1.vertices_) {
+                ids += s.getId() + " ";
+            }
+            for (NumberedSphere s : t2.vertices_) {
+                ids += s.getId() + " ";
+            }
+            Printer.warn("Suspicious tetrahedron intersection: "
+                    + t1.getId() + " " + t2.getId() + " " + ids);
+        }
+        return chooseLimitingSphere(intersection).getId();
+    }
 
-                    if (cs_.isAdmin() && intersection.length > 3) {
+    /*
+     * Computes segments of Voronoi edges between nodes from..to-1 and
+     * their neighbours with higher index. Segment of gate 4 * i + k is not
+     * created if there is no such edge.
+     */
+    private void createSegments(VoronoiGeometry g, Sphere[] greatest,
+            Segments segments, int from, int to) {
 
-                        String ids = "";
-                        for (NumberedSphere s :t1.vertices_) {
-                            ids += s.getId() +" ";
-                        }
-                        for (NumberedSphere s :t2.vertices_) {
-                            ids+= s.getId() + " ";
-                        }
-                        Printer.warn("Suspicious tetrahedron intersection: " +
-                                t1.getId() +  " "+ t2.getId() + " " + ids);
+        for (int i = from; i < to; i++) {
+            for (int k = 0; k < 4; k++) {
 
-                    }
+                int n2 = g.neighbours_[4 * i + k];
+
+                if (NULL != n2 && i < n2) { // geometry && undirected edges
 
-                    NumberedSphere limiting = chooseLimitingSphere(intersection);
+                    Sphere s1 = greatest[i]; // widest point A
+                    Sphere s2 = greatest[n2]; // widest point B
 
                     Point p1 = s1.getS();
                     Point p2 = s2.getS();
 
-                    int n1 = f1.index;
-                    int n2 = f2.index;
+                    int n1 = i;
 
                     VE segment;
-                    if (cs_.getProbeRadius() <= s1.getR() 
+                    int limitingId = g.limiting_[4 * i + k];
+                    if (cs_.getProbeRadius() <= s1.getR()
                             && cs_.getProbeRadius() <= s2.getR()) {
 
                         segment = new VE(n1, n2, p1, p2,
-                                limiting.getSphere(), cs_.getPassingFunction());
+                                g.getSphere(limitingId),
+                                cs_.getPassingFunction());
 
                         if (segment.getBottleneck().getR() < cs_.getProbeRadius()) {
                             segment = VE.getBlockedEdge();
+                            limitingId = NULL;
                         }
                     } else {
                         segment = VE.getBlockedEdge();
-
+                        limitingId = NULL;
                     }
-                    vd.connect(n1, n2, segment);
-                    vd.connect(n2, n1, segment);
-
+                    segments.set(4 * i + k, segment, limitingId);
                 }
             }
-            j++;
         }
+    }
 
-        Clock.stop("voronoi diagram construction: 5. gates");
+    /*
+     * Splits the nodes into chunks processed by the thread pool.
+     */
+    private class GateConstruction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int CHUNK = 1024;
+        private VoronoiGeometry geometry_;
+        private Sphere[] greatest_;
+        private Segments segments_;
+        private int from_;
+        private int to_;
+
+        public GateConstruction(VoronoiGeometry geometry, Sphere[] greatest,
+                Segments segments, int from, int to) {
+            geometry_ = geometry;
+            greatest_ = greatest;
+            segments_ = segments;
+            from_ = from;
+            to_ = to;
+        }
 
-        Clock.start("voronoi diagram construction: 6. test");
-        
-        Clock.stop("voronoi diagram construction: 6. test");
-        Clock.stop("voronoi diagram construction: procedure");
-        return vd;
+        @Override
+        protected void compute() {
+            if (to_ - from_ <= CHUNK) {
+                createSegments(geometry_, greatest_, segments_, from_, to_);
+            } else {
+                int middle = (from_ + to_) / 2;
+                invokeAll(
+                        new GateConstruction(geometry_, greatest_, segments_,
+                        from_, middle),
+                        new GateConstruction(geometry_, greatest_, segments_,
+                        middle, to_));
+            }
+        }
     }
 
     public Set<NumberedSphere> as(NumberedSphere[] a) {
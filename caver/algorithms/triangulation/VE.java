@@ -25,6 +25,8 @@ public class VE implements Serializable {
     private Point b_; // point B
     private double weight_;
     private Sphere bottleneck_ = null;
+    private transient CostFunction integrated_ = null; // weight_ is to be
+    //                                                    integrated by it
 
     static {
         blockedEdge = new VE();
@@ -57,7 +59,7 @@ public class VE implements Serializable {
     }
 
     public VE flip() {
-        VE ve = new VE(nodeB_, nodeA_, b_, a_, s_, weight_,
+        VE ve = new VE(nodeB_, nodeA_, b_, a_, s_, getWeight(),
                 bottleneck_);
         return ve;
     }
@@ -116,6 +118,10 @@ public class VE implements Serializable {
     }
 
     public double getWeight() {
+        if (null != integrated_) {
+            weight_ = integrateWeight(integrated_);
+            integrated_ = null;
+        }
         return weight_;
     }
 
@@ -123,7 +129,23 @@ public class VE implements Serializable {
         return bottleneck_;
     }
 
+    /*
+     * The weight is the sum of costs of n + 1 samples of the segment,
+     * including both end points, each weighted by the sampling step and
+     * multiplied by the step again. If the cost function integrates, the
+     * inner sum is replaced by the integral along the segment corrected by
+     * the halves of the end samples, which differs from the sampled sum only
+     * by the error of the trapezoidal rule. The bottleneck is then the point
+     * of the segment closest to the limiting sphere and the weight is
+     * integrated only when needed, it is not for edges blocked by their
+     * bottleneck.
+     */
     private void computeWeightAndBottleneck(CostFunction f) {
+        if (f.integrates()) {
+            computeBottleneck();
+            integrated_ = f;
+            return;
+        }
         double e = 0.1;
         int n = (int) Math.ceil(b_.minus(a_).size() / e);
         if (n < 8) {
@@ -160,6 +182,44 @@ public class VE implements Serializable {
         bottleneck_ = new Sphere(minP, minR);
     }
 
+    private void computeBottleneck() {
+        Point v = b_.minus(a_);
+        double t = 0;
+        double squaredLength = v.squaredSize();
+        if (0 < squaredLength) {
+            t = s_.getS().minus(a_).dot(v) / squaredLength;
+            t = Math.min(1, Math.max(0, t));
+        }
+        Point minP = a_.plus(v.multiply(t));
+        bottleneck_ = new Sphere(minP, Math.max(0, s_.distance(minP)));
+    }
+
+    private double integrateWeight(CostFunction f) {
+        Point v = b_.minus(a_);
+        double length = v.size();
+        int n = (int) Math.ceil(length / 0.1);
+        if (n < 8) {
+            n = 8;
+        }
+        if (1000 < n) {
+            n = 1000;
+        }
+        double step = length / n;
+
+        Point c = s_.getS().minus(a_);
+        double closest = 0;
+        double distance = c.size();
+        if (0 < length) {
+            closest = c.dot(v) / length;
+            distance = Math.sqrt(Math.max(0,
+                    c.squaredSize() - closest * closest));
+        }
+        double integral = f.integrate(length, closest, distance, s_.getR());
+        double ends = (f.getCost(s_.distance(a_), step)
+                + f.getCost(s_.distance(b_), step)) / 2;
+        return step * (integral + ends);
+    }
+
     public String cut(double d) {
         return String.format("%.4f", d);
     }
@@ -1,5 +1,7 @@
 package algorithms.triangulation;
 
+import algorithms.search.CostFunction;
+import algorithms.search.SearchTables;
 import caver.CalculationSettings;
 import caver.Printer;
 import chemistry.pdb.PdbLine;
@@ -23,69 +25,96 @@ import java.util.logging.Logger;
  * Voronoi diagram of set of a set of spheres of identical radii. Only Voronoi
  * edges are stored.
  *
+ * Nodes and edges are kept in flat primitive arrays, gate i of node n is at
+ * index 4 * n + i. VE objects are created only on demand, e.g. for edges of
+ * tunnels, from the nodes and the limiting sphere of the edge.
+ *
  */
 public class VoronoiDiagram {
 
-    private int neighbours_[][]; // neighbours_[node] contains four 
-    //                              neighbouring nodes of node
-    private VE[][] segments_;
+    private int neighbours_[]; // neighbours_[4 * node + gate] are four
+    //                            neighbouring nodes of node
+    private double[] weights_; // of edges, by gates as neighbours_
+    private double[] bottlenecks_; // radii of the edge bottlenecks
+    private int[] limiting_; // sphere limiting edge, NULL if blocked
+    private double[] limitingSpheres_; // x, y, z, r of sphere by its id
+    private CostFunction costFunction_;
     private boolean disabled_[]; // disabled nodes, i.e. deleted. 
     //                              WARNING: eges still exists 
     //                              (neighbours_ etc.)
     private boolean outer_[];
-    private Sphere[] spheres_;
-    private double[] distances_;
-    private int[] previous_;
+    private boolean sharedFlags_; // disabled_ and outer_ of another diagram
+    private double[] points_; // x, y, z of each node
+    private double[] radii_; // radius of the greatest sphere in node
     public final int OUT = -2;
     public final int NULL = -1;
-    KDTree<Integer> kdTree_;
+    private NodeGrid grid_; // of node centers, created on demand
+    private HullBottlenecks hullBottlenecks_; // created on demand
 
     private VoronoiDiagram() {
     }
 
-    public void initializeSearchTables() {
-        distances_ = new double[size()];
-        Arrays.fill(distances_, Double.MAX_VALUE);
-        previous_ = new int[size()];
-        Arrays.fill(previous_, NULL);
-    }
-
-    public double[] copyDistances() {
-        double[] distances = new double[distances_.length];
-        System.arraycopy(distances_, 0, distances, 0, distances_.length);
-        return distances;
-    }
-
-    public int[] copyPrevious() {
-        int[] previous = new int[previous_.length];
-        System.arraycopy(previous_, 0, previous, 0, previous_.length);
-        return previous;
-    }
-
-    public static VoronoiDiagram create(int n) {
+    /*
+     * Diagram of n nodes with edges limited by spheres of ids 0..spheres-1,
+     * costFunction is used to recompute VE objects of the edges.
+     */
+    public static VoronoiDiagram create(int n, int spheres,
+            CostFunction costFunction) {
         VoronoiDiagram vd = new VoronoiDiagram();
-        vd.neighbours_ = new int[n][4]; // initialized to NONE
-
-        for (int i = 0; i < vd.neighbours_.length; i++) {
-            for (int j = 0; j < 4; j++) {
-                vd.neighbours_[i][j] = vd.OUT;
-            }
-        }
-        vd.segments_ = new VE[n][4];
+        vd.neighbours_ = new int[4 * n];
+        Arrays.fill(vd.neighbours_, vd.OUT);
+        vd.weights_ = new double[4 * n];
+        vd.bottlenecks_ = new double[4 * n];
+        vd.limiting_ = new int[4 * n];
+        Arrays.fill(vd.limiting_, vd.NULL);
+        vd.limitingSpheres_ = new double[4 * spheres];
+        vd.costFunction_ = costFunction;
         vd.disabled_ = new boolean[n];
         vd.outer_ = new boolean[n];
-        vd.spheres_ = new Sphere[n];
+        vd.points_ = new double[3 * n];
+        vd.radii_ = new double[n];
 
+        return vd;
+    }
 
+    /*
+     * Diagram of the same nodes and edges, which can be searched from another
+     * starting point. Its disabled and outer nodes are copied on the first
+     * change, both diagrams share the other arrays and indexes of nodes.
+     */
+    public VoronoiDiagram share() {
+        VoronoiDiagram vd = new VoronoiDiagram();
+        vd.neighbours_ = neighbours_;
+        vd.weights_ = weights_;
+        vd.bottlenecks_ = bottlenecks_;
+        vd.limiting_ = limiting_;
+        vd.limitingSpheres_ = limitingSpheres_;
+        vd.costFunction_ = costFunction_;
+        vd.points_ = points_;
+        vd.radii_ = radii_;
+        vd.grid_ = getGrid();
+        vd.hullBottlenecks_ = getHullBottlenecks();
+        vd.disabled_ = disabled_;
+        vd.outer_ = outer_;
+        vd.sharedFlags_ = true;
+        sharedFlags_ = true;
         return vd;
     }
 
+    private void unshareFlags() {
+        if (sharedFlags_) {
+            disabled_ = disabled_.clone();
+            outer_ = outer_.clone();
+            sharedFlags_ = false;
+        }
+    }
+
     public boolean check() {
 
-        for (int i = 0; i < neighbours_.length; i++) {
+        for (int i = 0; i < size(); i++) {
             for (int j = 0; j < 4; j++) {
                 int x = i;
-                int y = neighbours_[x][j];
+                int y = neighbours_[4 * x + j];
                 if (0 <= y) {
                     if (areConnected(x, y) != areConnected(y, x)) {
                         throw new RuntimeException();
@@ -94,8 +123,8 @@ public class VoronoiDiagram {
             }
         }
 
-        for (int i = 0; i < neighbours_.length; i++) {
-            for (int j = i + 1; j < neighbours_.length; j++) {
+        for (int i = 0; i < size(); i++) {
+            for (int j = i + 1; j < size(); j++) {
                 assert areConnected(i, j) == areConnected(j, i);
                 if (getBottleneckByNodes(i, j) != getBottleneckByNodes(j, i)) {
                     VE a = this.getSegmentByNodes(i, j);
@@ -129,7 +158,7 @@ public class VoronoiDiagram {
 
         KDTree<Point> kdTree = new KDTree<Point>(3);
         // outside Voronoi vertices
-        for (int node = 0; node < spheres_.length; node++) {
+        for (int node = 0; node < size(); node++) {
             Point p = getPoint(node);
             double[] coords = p.getCoordinates();
             try {
@@ -162,40 +191,36 @@ public class VoronoiDiagram {
 
     }
 
-    public void createKDTree() {
-
-        kdTree_ = new KDTree<Integer>(3);
-        for (int node = 0; node < spheres_.length; node++) {
-            double[] coords = getPoint(node).getCoordinates();
-            try {
-                kdTree_.insert(coords, node);
-            } catch (KeySizeException e) {
-                throw new RuntimeException(e);
-            } catch (KeyDuplicateException e) {
-                Logger.getLogger("caver").warning("DUPL");
-                Logger.getLogger("caver").log(Level.WARNING,
-                        "inserted node: {0}", node);
-                try {
-                    Logger.getLogger("caver").log(Level.WARNING,
-                            "existant node: {0}", kdTree_.search(coords));
-                } catch (KeySizeException ex) {
-                    throw new RuntimeException(ex);
-                }
-                throw new RuntimeException(e);
-            }
+    private synchronized NodeGrid getGrid() {
+        if (null == grid_) {
+            grid_ = new NodeGrid(points_, radii_);
         }
+        return grid_;
     }
 
-    public void destroyKDTree() {
-        kdTree_ = null;
+    /*
+     * Width of the widest path from the node to the convex hull of the
+     * diagram, zero if there is none. Paths do not pass nodes on border,
+     * the node must not be on border.
+     */
+    public double getHullBottleneck(int node) {
+        return getHullBottlenecks().get(node);
     }
 
-    public List<Integer> nearestEuclidean(double[] coords, double distance) {
-        try {
-            return kdTree_.nearestEuclidean(coords, distance);
-        } catch (KeySizeException e) {
-            throw new RuntimeException(e);
+    private synchronized HullBottlenecks getHullBottlenecks() {
+        if (null == hullBottlenecks_) {
+            hullBottlenecks_ = new HullBottlenecks(neighbours_, bottlenecks_);
         }
+        return hullBottlenecks_;
+    }
+
+    /*
+     * Nodes not farther than distance from point p with the radius at least
+     * minRadius, ordered by index.
+     */
+    public int[] getNodesWithin(Point p, double distance, double minRadius) {
+        return getGrid().within(p.getX(), p.getY(), p.getZ(), distance,
+                minRadius);
     }
 
     public void save(CalculationSettings cs, File f) throws IOException {
@@ -208,11 +233,12 @@ public class VoronoiDiagram {
         BufferedWriter bw = new BufferedWriter(new FileWriter(f));
         bw.write(PdbUtil.getModelString(model) + "\n");
 
-        for (int node = 0; node < segments_.length; node++) {
-            for (VE s : segments_[node]) {
-                if (null == s) {
+        for (int node = 0; node < size(); node++) {
+            for (int gate = 0; gate < 4; gate++) {
+                if (!valid(neighbours_[4 * node + gate])) {
                     continue;
                 }
+                VE s = getSegment(node, gate);
 
                 if (null == s.getA() || null == s.getB()) {
                     continue;
@@ -253,7 +279,7 @@ public class VoronoiDiagram {
         bw.close();
     }
 
-    public void saveTree(File f) throws IOException {
+    public void saveTree(File f, SearchTables tables) throws IOException {
 
         int serial = 1;
         int model = 1;
@@ -263,8 +289,8 @@ public class VoronoiDiagram {
         bw.write(PdbUtil.getModelString(model) + "\n");
 
 
-        for (int node = 0; node < segments_.length; node++) {
-            int previous = getPrevious(node);
+        for (int node = 0; node < size(); node++) {
+            int previous = tables.getPrevious(node);
             if (valid(previous)) {
 
                 VE e = this.getSegmentByNodes(node, previous);
@@ -299,7 +325,8 @@ public class VoronoiDiagram {
         bw.close();
     }
 
-    public void saveVoid(File f, SnapId snapId) throws IOException {
+    public void saveVoid(File f, SnapId snapId, SearchTables tables)
+            throws IOException {
 
         boolean overflow = false;
         int serial = 1;
@@ -308,8 +335,8 @@ public class VoronoiDiagram {
         bw = new BufferedWriter(new FileWriter(f, true));
         bw.write(PdbUtil.getModelString(snapId.getNumber()) + "\n");
 
-        for (int node = 0; node < segments_.length; node++) {
-            int previous = getPrevious(node);
+        for (int node = 0; node < size(); node++) {
+            int previous = tables.getPrevious(node);
             if (valid(previous)) {
 
                 VE e = this.getSegmentByNodes(node, previous);
@@ -347,33 +374,45 @@ public class VoronoiDiagram {
     }
 
     public int size() {
-        return neighbours_.length;
+        return radii_.length;
     }
 
-    // connects x and y by directed edge
+    // connects x and y by directed edge of given weight and bottleneck radius,
+    // limiting is id of the sphere limiting the edge or NULL for edges 
+    // blocked for the probe
     // in the end all edges should be bidirectional
-    public void connect(int x, int y, VE segment) {
+    public void connect(int x, int y, double weight, double bottleneck,
+            int limiting) {
 
 //        assert !areConnected(x, y);
 //        assert !areConnected(y, x);
 
         assert x != y;
-        assert x < neighbours_.length : x + "<" + neighbours_.length;
-        assert y < neighbours_.length : y + "<" + neighbours_.length;
+        assert x < size() : x + "<" + size();
+        assert y < size() : y + "<" + size();
 
         int slot = NULL;
         for (int i = 0; i < 4; i++) {
-            if (OUT == neighbours_[x][i]) {
+            if (OUT == neighbours_[4 * x + i]) {
                 slot = i;
             }
         }
-        neighbours_[x][slot] = y;
-        segments_[x][slot] = segment;
+        neighbours_[4 * x + slot] = y;
+        weights_[4 * x + slot] = weight;
+        bottlenecks_[4 * x + slot] = bottleneck;
+        limiting_[4 * x + slot] = limiting;
+    }
+
+    public void setLimitingSphere(int id, Sphere s) {
+        limitingSpheres_[4 * id] = s.getS().getX();
+        limitingSpheres_[4 * id + 1] = s.getS().getY();
+        limitingSpheres_[4 * id + 2] = s.getS().getZ();
+        limitingSpheres_[4 * id + 3] = s.getR();
     }
 
     public boolean areConnected(int x, int y) {
         for (int i = 0; i < 4; i++) {
-            if (y == neighbours_[x][i]) {
+            if (y == neighbours_[4 * x + i]) {
                 return true;
             }
         }
@@ -381,7 +420,7 @@ public class VoronoiDiagram {
     }
 
     public int getNeighbour(int node, int gate) {
-        return neighbours_[node][gate];
+        return neighbours_[4 * node + gate];
     }
 
     public boolean valid(int node) {
@@ -389,6 +428,7 @@ public class VoronoiDiagram {
     }
 
     public void makeOuter(int node) {
+        unshareFlags();
         outer_[node] = true;
     }
 
@@ -397,8 +437,8 @@ public class VoronoiDiagram {
      */
     public boolean isOuter(int node) {
 
-        for (int n : neighbours_[node]) {
-
+        for (int i = 4 * node; i < 4 * node + 4; i++) {
+            int n = neighbours_[i];
             if (NULL == n || OUT == n) {
                 return true;
             }
@@ -421,8 +461,8 @@ public class VoronoiDiagram {
      */
     public boolean isOnBorder(int node) {
 
-        for (int n : neighbours_[node]) {
-
+        for (int i = 4 * node; i < 4 * node + 4; i++) {
+            int n = neighbours_[i];
             if (NULL == n || OUT == n) {
                 return true;
             }
@@ -433,7 +473,8 @@ public class VoronoiDiagram {
 
     public List<Integer> getNeighbours(int node) {
         List<Integer> list = new ArrayList<Integer>();
-        for (int n : neighbours_[node]) {
+        for (int i = 4 * node; i < 4 * node + 4; i++) {
+            int n = neighbours_[i];
             if (NULL != n && OUT != n) {
                 list.add(n);
             }
@@ -444,25 +485,43 @@ public class VoronoiDiagram {
 
     public VE getSegmentByNodes(int nodeA, int nodeB) {
         for (int i = 0; i < 4; i++) {
-            if (nodeB == neighbours_[nodeA][i]) {
-                return segments_[nodeA][i];
+            if (nodeB == neighbours_[4 * nodeA + i]) {
+                return getSegment(nodeA, i);
             }
         }
         return null;
     }
 
+    /*
+     * Creates the edge leading through the gate, oriented from the node with
+     * lower number as the edge was constructed.
+     */
+    private VE getSegment(int node, int gate) {
+        int limiting = limiting_[4 * node + gate];
+        if (NULL == limiting) {
+            return VE.getBlockedEdge();
+        }
+        int a = Math.min(node, neighbours_[4 * node + gate]);
+        int b = Math.max(node, neighbours_[4 * node + gate]);
+        Sphere s = new Sphere(limitingSpheres_[4 * limiting],
+                limitingSpheres_[4 * limiting + 1],
+                limitingSpheres_[4 * limiting + 2],
+                limitingSpheres_[4 * limiting + 3]);
+        return new VE(a, b, getPoint(a), getPoint(b), s, costFunction_);
+    }
+
     // WARNING: returns 0 for gates leading to outer space
     public double getBottleneckByGate(int node, int gate) {
-        if (OUT == neighbours_[node][gate]) {
+        if (OUT == neighbours_[4 * node + gate]) {
             return 0; // in fact, we do not know, but search ends here anyway
         } else {
-            return segments_[node][gate].getBottleneck().getR();
+            return bottlenecks_[4 * node + gate];
         }
     }
 
     public Double getBottleneckByNodes(int a, int b) {
         for (int i = 0; i < 4; i++) {
-            if (neighbours_[a][i] == b) {
+            if (neighbours_[4 * a + i] == b) {
                 return getBottleneckByGate(a, i);
             }
         }
@@ -470,7 +529,7 @@ public class VoronoiDiagram {
     }
 
     public double getWeight(int node, int gate) {
-        return segments_[node][gate].getWeight();
+        return weights_[4 * node + gate];
     }
 
     public boolean disabled(int node) {
@@ -478,39 +537,39 @@ public class VoronoiDiagram {
     }
 
     public void disable(int node) {
+        unshareFlags();
         disabled_[node] = true;
     }
 
     public void setPoint(int node, Sphere s) {
-        spheres_[node] = s;
+        points_[3 * node] = s.getS().getX();
+        points_[3 * node + 1] = s.getS().getY();
+        points_[3 * node + 2] = s.getS().getZ();
+        radii_[node] = s.getR();
+        grid_ = null;
     }
 
     public Sphere getSphere(int node) {
-        return spheres_[node];
+        return new Sphere(getPoint(node), radii_[node]);
     }
 
     public Point getPoint(int node) {
-        return spheres_[node].getS();
+        return new Point(points_[3 * node], points_[3 * node + 1],
+                points_[3 * node + 2]);
     }
 
     public double getVertexRadius(int node) {
-        return spheres_[node].getR();
+        return radii_[node];
     }
 
-    public void setDistance(int node, double distance) {
-        distances_[node] = distance;
-    }
-
-    public double getDistance(int node) {
-        return distances_[node];
-    }
-
-    public void setPrevious(int node, int previousNode) {
-        previous_[node] = previousNode;
-    }
-
-    public int getPrevious(int node) {
-        return previous_[node];
+    /*
+     * Distance of node from point p.
+     */
+    public double distance(int node, Point p) {
+        double dx = points_[3 * node] - p.getX();
+        double dy = points_[3 * node + 1] - p.getY();
+        double dz = points_[3 * node + 2] - p.getZ();
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
     }
 
     public int countNodes() {
@@ -524,75 +583,37 @@ public class VoronoiDiagram {
     }
 
     public Integer getClosestNode(Point point) {
-        double min = Double.MAX_VALUE;
-        Integer node = null;
-        for (int i = 0; i < spheres_.length; i++) {
-            if (!disabled(i)) {
-                double dist = point.distance(spheres_[i].getS());
-                if (dist < min) {
-                    node = i;
-                    min = dist;
-                }
-            }
-        }
-        return node;
+        int node = getGrid().nearest(point.getX(), point.getY(),
+                point.getZ(), Double.MAX_VALUE, Double.NEGATIVE_INFINITY,
+                disabled_);
+        return NULL == node ? null : node;
     }
 
     private Integer findClosest(Point origin) {
-
-        Integer node = null;
-
-        for (int i = 0; i < spheres_.length; i++) {
-            if (null == node) {
-                node = i;
-            } else {
-                double d = origin.distance(spheres_[i].getS());
-                double dOld = origin.distance(spheres_[node].getS());
-                if (d < dOld) {
-                    node = i;
-                }
-            }
-        }
-        return node;
+        int node = getGrid().nearest(origin.getX(), origin.getY(),
+                origin.getZ(), Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, null);
+        return NULL == node ? null : node;
     }
 
     private Integer optimizeByParameters(
             Point origin, double desiredRadius, double maxDistance) {
 
-        Integer node = null;
-
-        for (int i = 0; i < spheres_.length; i++) {
-            if (desiredRadius <= spheres_[i].getR()) {
-                double d = origin.distance(spheres_[i].getS());
-                if (d <= maxDistance) {
-                    if (null == node) {
-                        node = i;
-                    } else {
-                        double dOld = origin.distance(spheres_[node].getS());
-                        if (d < dOld) {
-                            node = i;
-                        }
-                    }
-                }
-            }
-        }
+        NodeGrid grid = getGrid();
+        int node = grid.nearest(origin.getX(), origin.getY(), origin.getZ(),
+                maxDistance, desiredRadius, null);
 
         // find vertex with greatest possible radius within maxDistance
-        if (null == node) {
-            for (int i = 0; i < spheres_.length; i++) {
-                double d = origin.distance(spheres_[i].getS());
-                if (d < maxDistance) {
-                    if (null == node) {
-                        node = i;
-                    } else {
-                        if (spheres_[node].getR() < spheres_[i].getR()) {
-                            node = i;
-                        }
-                    }
+        if (NULL == node) {
+            for (int i : grid.within(origin.getX(), origin.getY(),
+                    origin.getZ(), maxDistance, Double.NEGATIVE_INFINITY)) {
+                if (distance(i, origin) < maxDistance
+                        && (NULL == node || radii_[node] < radii_[i])) {
+                    node = i;
                 }
             }
         }
-        return node;
+        return NULL == node ? null : node;
     }
 
     public Integer getOptimizedOrigin(Point origin,
@@ -618,18 +639,18 @@ public class VoronoiDiagram {
         if (null == node) {
             node = findClosest(origin);
 
-            double d = reduce(origin.distance(spheres_[node].getS()));
-            double r = reduce(spheres_[node].getR());
+            double d = reduce(distance(node, origin));
+            double r = reduce(radii_[node]);
             Printer.warn("No vertex found within the distance of "
                     + defaultMaxDistance + ", using the closest vertex "
                     + "as a starting point (distance: " + d + ", radius: "
                     + r + ").");
         }
 
-        double r = reduce(spheres_[node].getR());
-        if (spheres_[node].getR() < probeR) {
+        double r = reduce(radii_[node]);
+        if (radii_[node] < probeR) {
             Printer.warn("Starting point is more narrow (radius: "
-                    + spheres_[node].getR() + ") than probe (radius: " + probeR
+                    + radii_[node] + ") than probe (radius: " + probeR
                     + "). No tunnels will be find, please specify starting "
                     + "point better or change starting point optimization"
                     + " parameters max_distance and desired_radius.");
@@ -648,12 +669,12 @@ public class VoronoiDiagram {
      */
     public Set<Integer> getOuterNodes() {
         Set<Integer> set = new HashSet<Integer>();
-        for (int i = 0; i < neighbours_.length; i++) {
+        for (int i = 0; i < size(); i++) {
             if (!disabled(i)) {
                 for (int j = 0; j < 4; j++) {
                     // no neighbour or disabled neighbour
-                    if (NULL == neighbours_[i][j] || OUT == neighbours_[i][j]
-                            || disabled(neighbours_[i][j])) {
+                    if (NULL == neighbours_[4 * i + j] || OUT == neighbours_[4 * i + j]
+                            || disabled(neighbours_[4 * i + j])) {
                         set.add(i);
                         break;
                     }
@@ -665,7 +686,7 @@ public class VoronoiDiagram {
 
     public Set<Integer> getDisbledNodes() {
         Set<Integer> set = new HashSet<Integer>();
-        for (int i = 0; i < neighbours_.length; i++) {
+        for (int i = 0; i < size(); i++) {
             if (disabled(i)) {
                 set.add(i);
             }
@@ -675,10 +696,10 @@ public class VoronoiDiagram {
 
     public Set<Integer> getDisabledNeighbouringEnabledNodes() {
         Set<Integer> set = new HashSet<Integer>();
-        for (int i = 0; i < neighbours_.length; i++) {
+        for (int i = 0; i < size(); i++) {
             if (disabled(i)) {
                 for (int j = 0; j < 4; j++) {
-                    int n = neighbours_[i][j];
+                    int n = neighbours_[4 * i + j];
                     if (valid(n) && !disabled(n)) {
                         set.add(i);
                         break;
@@ -691,10 +712,10 @@ public class VoronoiDiagram {
 
     public Set<Integer> getNodesOnSurface() {
         Set<Integer> set = new HashSet<Integer>();
-        for (int i = 0; i < neighbours_.length; i++) {
+        for (int i = 0; i < size(); i++) {
             for (int j = 0; j < 4; j++) {
                 // no neighbour                
-                if (OUT == neighbours_[i][j] || NULL == neighbours_[i][j]) {
+                if (OUT == neighbours_[4 * i + j] || NULL == neighbours_[4 * i + j]) {
                     set.add(i);
                     break;
                 }
@@ -0,0 +1,227 @@
+package algorithms.triangulation;
+
+import geometry.primitives.Point;
+import geometry.primitives.Sphere;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ *
+ * Geometry of a Voronoi diagram which does not depend on the probe or the
+ * cost function, i.e. the diagram before the edges are blocked and weighted.
+ * It can be saved to a binary file and read back.
+ *
+ * File layout (big endian): magic, number of nodes n, number of spheres m,
+ * int neighbours[4n], int limiting[4n], double nodes[4n],
+ * double spheres[4m].
+ */
+public class VoronoiGeometry {
+
+    private static final int MAGIC = 0x43564431; // CVD1
+    private static final int CHUNK = 1 << 20; // bytes written or read at once
+    int[] neighbours_; // neighbours_[4 * node + gate], NULL if none
+    int[] limiting_; // id of the sphere limiting the edge of the gate, only
+    //                  for gates to neighbours with higher index, else NULL
+    double[] nodes_; // x, y, z, r of the greatest sphere of each node
+    double[] spheres_; // x, y, z, r of sphere by its id
+
+    VoronoiGeometry(int n, int spheres) {
+        neighbours_ = new int[4 * n];
+        limiting_ = new int[4 * n];
+        nodes_ = new double[4 * n];
+        spheres_ = new double[4 * spheres];
+    }
+
+    public int size() {
+        return nodes_.length / 4;
+    }
+
+    public int countSpheres() {
+        return spheres_.length / 4;
+    }
+
+    void setNode(int node, Sphere s) {
+        put(nodes_, node, s);
+    }
+
+    Sphere getNode(int node) {
+        return get(nodes_, node);
+    }
+
+    void setSphere(int id, Sphere s) {
+        put(spheres_, id, s);
+    }
+
+    Sphere getSphere(int id) {
+        return get(spheres_, id);
+    }
+
+    private static void put(double[] a, int i, Sphere s) {
+        a[4 * i] = s.getS().getX();
+        a[4 * i + 1] = s.getS().getY();
+        a[4 * i + 2] = s.getS().getZ();
+        a[4 * i + 3] = s.getR();
+    }
+
+    private static Sphere get(double[] a, int i) {
+        return new Sphere(new Point(a[4 * i], a[4 * i + 1], a[4 * i + 2]),
+                a[4 * i + 3]);
+    }
+
+    public void save(File f) throws IOException {
+        // written to a temporary file of its own first and renamed, a
+        // concurrent run never reads an incomplete diagram
+        File dir = f.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(f.getName(), ".tmp", dir);
+        boolean saved = false;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer bb = ByteBuffer.allocateDirect(CHUNK);
+                bb.order(ByteOrder.BIG_ENDIAN);
+                bb.putInt(MAGIC).putInt(size()).putInt(countSpheres());
+                write(channel, bb, neighbours_);
+                write(channel, bb, limiting_);
+                write(channel, bb, nodes_);
+                write(channel, bb, spheres_);
+                flush(channel, bb);
+            } finally {
+                raf.close();
+            }
+            try {
+                Files.move(tmp.toPath(), f.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), f.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            saved = true;
+        } finally {
+            if (!saved) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /*
+     * Returns null if the file is not a saved diagram.
+     */
+    public static VoronoiGeometry load(File f) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < 12) {
+                return null;
+            }
+            ByteBuffer bb = ByteBuffer.allocateDirect(CHUNK);
+            bb.order(ByteOrder.BIG_ENDIAN);
+            bb.limit(0);
+            fill(channel, bb, 12);
+            if (MAGIC != bb.getInt()) {
+                return null;
+            }
+            int n = bb.getInt();
+            int m = bb.getInt();
+            if (n < 0 || m < 0 || length != 12 + 64L * n + 32L * m) {
+                return null;
+            }
+            VoronoiGeometry g = new VoronoiGeometry(n, m);
+            read(channel, bb, g.neighbours_);
+            read(channel, bb, g.limiting_);
+            read(channel, bb, g.nodes_);
+            read(channel, bb, g.spheres_);
+            return g;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /*
+     * The arrays go through a buffer of CHUNK bytes, the file may be larger
+     * than a buffer can be.
+     */
+    private static void write(FileChannel channel, ByteBuffer bb, int[] a)
+            throws IOException {
+        for (int i = 0; i < a.length;) {
+            if (bb.remaining() < 4) {
+                flush(channel, bb);
+            }
+            int k = Math.min(a.length - i, bb.remaining() / 4);
+            bb.asIntBuffer().put(a, i, k);
+            bb.position(bb.position() + 4 * k);
+            i += k;
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer bb,
+            double[] a) throws IOException {
+        for (int i = 0; i < a.length;) {
+            if (bb.remaining() < 8) {
+                flush(channel, bb);
+            }
+            int k = Math.min(a.length - i, bb.remaining() / 8);
+            bb.asDoubleBuffer().put(a, i, k);
+            bb.position(bb.position() + 8 * k);
+            i += k;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer bb)
+            throws IOException {
+        bb.flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+        bb.clear();
+    }
+
+    private static void read(FileChannel channel, ByteBuffer bb, int[] a)
+            throws IOException {
+        for (int i = 0; i < a.length;) {
+            if (bb.remaining() < 4) {
+                fill(channel, bb, 4);
+            }
+            int k = Math.min(a.length - i, bb.remaining() / 4);
+            bb.asIntBuffer().get(a, i, k);
+            bb.position(bb.position() + 4 * k);
+            i += k;
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer bb, double[] a)
+            throws IOException {
+        for (int i = 0; i < a.length;) {
+            if (bb.remaining() < 8) {
+                fill(channel, bb, 8);
+            }
+            int k = Math.min(a.length - i, bb.remaining() / 8);
+            bb.asDoubleBuffer().get(a, i, k);
+            bb.position(bb.position() + 8 * k);
+            i += k;
+        }
+    }
+
+    /*
+     * Reads more of the file after the unread rest of the buffer, at least
+     * min bytes are then ready.
+     */
+    private static void fill(FileChannel channel, ByteBuffer bb, int min)
+            throws IOException {
+        bb.compact();
+        while (bb.position() < min) {
+            if (channel.read(bb) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        bb.flip();
+    }
+}
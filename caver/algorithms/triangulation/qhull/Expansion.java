@@ -0,0 +1,183 @@
+package algorithms.triangulation.qhull;
+
+import java.util.Arrays;
+
+/*
+ * Exact arithmetic on floating point expansions, sums of nonoverlapping
+ * doubles ordered by increasing magnitude, following J. R. Shewchuk,
+ * Adaptive Precision Floating-Point Arithmetic and Fast Robust Geometric
+ * Predicates, 1997. Zero components are eliminated, an expansion has at
+ * least one component and its sign is the sign of the last one.
+ */
+class Expansion {
+
+    private static final double SPLITTER = 134217729.0D; // 2^27 + 1
+
+    /*
+     * Exact difference a - b.
+     */
+    static double[] difference(double a, double b) {
+        double x = a - b;
+        double bvirt = a - x;
+        double avirt = x + bvirt;
+        double bround = bvirt - b;
+        double around = a - avirt;
+        double y = around + bround;
+        if (0 == y) {
+            return new double[]{x};
+        }
+        return new double[]{y, x};
+    }
+
+    static int sign(double[] e) {
+        double d = e[e.length - 1];
+        return d > 0 ? 1 : (d < 0 ? -1 : 0);
+    }
+
+    static double[] negate(double[] e) {
+        double[] h = new double[e.length];
+        for (int i = 0; i < e.length; i++) {
+            h[i] = -e[i];
+        }
+        return h;
+    }
+
+    static double[] sum(double[] e, double[] f) {
+        double[] h = new double[e.length + f.length];
+        int ei = 0;
+        int fi = 0;
+        double enow = e[0];
+        double fnow = f[0];
+        double q;
+        if ((fnow > enow) == (fnow > -enow)) {
+            q = enow;
+            ei++;
+        } else {
+            q = fnow;
+            fi++;
+        }
+        int hi = 0;
+        while (ei < e.length || fi < f.length) {
+            double b;
+            if (fi == f.length || (ei < e.length
+                    && (f[fi] > e[ei]) == (f[fi] > -e[ei]))) {
+                b = e[ei++];
+            } else {
+                b = f[fi++];
+            }
+            double x = q + b;
+            double bvirt = x - q;
+            double avirt = x - bvirt;
+            double bround = b - bvirt;
+            double around = q - avirt;
+            double y = around + bround;
+            q = x;
+            if (0 != y) {
+                h[hi++] = y;
+            }
+        }
+        if (0 != q || 0 == hi) {
+            h[hi++] = q;
+        }
+        return hi == h.length ? h : Arrays.copyOf(h, hi);
+    }
+
+    static double[] difference(double[] e, double[] f) {
+        return sum(e, negate(f));
+    }
+
+    static double[] scale(double[] e, double b) {
+        double[] h = new double[2 * e.length];
+        double c = SPLITTER * b;
+        double bhi = c - (c - b);
+        double blo = b - bhi;
+
+        double[] p = new double[2];
+        product(e[0], b, bhi, blo, p);
+        double q = p[1];
+        int hi = 0;
+        if (0 != p[0]) {
+            h[hi++] = p[0];
+        }
+        for (int i = 1; i < e.length; i++) {
+            product(e[i], b, bhi, blo, p);
+            // two sum of q and the low part
+            double sum = q + p[0];
+            double bvirt = sum - q;
+            double avirt = sum - bvirt;
+            double bround = p[0] - bvirt;
+            double around = q - avirt;
+            double y = around + bround;
+            if (0 != y) {
+                h[hi++] = y;
+            }
+            // fast two sum of the high part and the sum
+            q = p[1] + sum;
+            y = sum - (q - p[1]);
+            if (0 != y) {
+                h[hi++] = y;
+            }
+        }
+        if (0 != q || 0 == hi) {
+            h[hi++] = q;
+        }
+        return hi == h.length ? h : Arrays.copyOf(h, hi);
+    }
+
+    static double[] product(double[] e, double[] f) {
+        double[] h = scale(e, f[0]);
+        for (int i = 1; i < f.length; i++) {
+            h = sum(h, scale(e, f[i]));
+        }
+        return compress(h);
+    }
+
+    /*
+     * The same value with fewer components, they are no longer adjacent.
+     */
+    static double[] compress(double[] e) {
+        if (e.length < 3) {
+            return e;
+        }
+        double[] h = new double[e.length];
+        int bottom = e.length - 1;
+        double q = e[bottom];
+        for (int i = e.length - 2; 0 <= i; i--) {
+            double x = q + e[i];
+            double y = e[i] - (x - q);
+            if (0 != y) {
+                h[bottom--] = x;
+                q = y;
+            } else {
+                q = x;
+            }
+        }
+        int top = 0;
+        for (int i = bottom + 1; i < e.length; i++) {
+            double x = h[i] + q;
+            double y = q - (x - h[i]);
+            if (0 != y) {
+                h[top++] = y;
+            }
+            q = x;
+        }
+        h[top++] = q;
+        return Arrays.copyOf(h, top);
+    }
+
+    /*
+     * Exact product a * b = p[1] + p[0], where bhi + blo is the split of b.
+     */
+    private static void product(double a, double b, double bhi, double blo,
+            double[] p) {
+        double x = a * b;
+        double c = SPLITTER * a;
+        double ahi = c - (c - a);
+        double alo = a - ahi;
+        double err1 = x - (ahi * bhi);
+        double err2 = err1 - (alo * bhi);
+        double err3 = err2 - (ahi * blo);
+        p[0] = (alo * blo) - err3;
+        p[1] = x;
+    }
+}
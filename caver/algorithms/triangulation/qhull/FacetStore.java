@@ -0,0 +1,301 @@
+package algorithms.triangulation.qhull;
+
+import java.util.Arrays;
+
+/*
+ * Facets of a 4D convex hull kept in primitive arrays instead of an
+ * object per facet. Facet f has corners corner[4f..4f+3] (indices into the
+ * array of vertices given to QuickHull4D) ordered so that points outside of
+ * the facet are on the positive side of Predicates.orient, neighbors
+ * neighbor[4f..4f+3] (neighbor k shares the ridge of corners k, k+1 and
+ * k+2 mod 4) and hyperplane plane[8f..8f+7] used as a floating point
+ * filter of Predicates.orient. Slots of discarded facets are reused through
+ * a free list, the order of creation is kept in created[f].
+ */
+public class FacetStore {
+
+    public static final int NULL = -1;
+    private static final double ERROR_BOUND = 64 * Math.ulp(1.0D);
+    private Vertex[] vertices;
+    int[] corner;
+    int[] neighbor;
+    double[] plane; // coefficients of orient and of its error bound
+    int[] created;
+    boolean[] discarded;
+    int[] lastVisit;
+    int[] conflictHead; // first and last vertex outside of the facet
+    int[] conflictTail;
+    int[] conflictNext; // next vertex in the same list, for each vertex
+    private int[] free;
+    private int freeCount;
+    private int size;
+    private int createdCount;
+
+    FacetStore(Vertex[] vertices) {
+        this.vertices = vertices;
+        int vertexCount = vertices.length;
+        int capacity = Math.max(16, 8 * vertexCount);
+        corner = new int[4 * capacity];
+        neighbor = new int[4 * capacity];
+        plane = new double[8 * capacity];
+        created = new int[capacity];
+        discarded = new boolean[capacity];
+        lastVisit = new int[capacity];
+        conflictHead = new int[capacity];
+        conflictTail = new int[capacity];
+        conflictNext = new int[vertexCount];
+        free = new int[16];
+    }
+
+    /*
+     * Number of slots, including discarded facets.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isDiscarded(int f) {
+        return discarded[f];
+    }
+
+    public int getCorner(int f, int k) {
+        return corner[4 * f + k];
+    }
+
+    public int getNeighbor(int f, int k) {
+        return neighbor[4 * f + k];
+    }
+
+    public Vertex getVertex(int f, int k) {
+        return vertices[corner[4 * f + k]];
+    }
+
+    /*
+     * Facets which are not discarded, in the order of their creation.
+     */
+    public int[] getFacets() {
+        long[] keys = new long[size];
+        int n = 0;
+        for (int f = 0; f < size; f++) {
+            if (!discarded[f]) {
+                keys[n++] = ((long) created[f] << 32) | f;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int[] facets = new int[n];
+        for (int i = 0; i < n; i++) {
+            facets[i] = (int) keys[i];
+        }
+        return facets;
+    }
+
+    /*
+     * Releases the structures needed only during the construction.
+     */
+    void finish() {
+        lastVisit = null;
+        conflictHead = null;
+        conflictTail = null;
+        conflictNext = null;
+        free = null;
+    }
+
+    int getCreatedCount() {
+        return createdCount;
+    }
+
+    /*
+     * Returns a slot for a new facet with all neighbors and the list of
+     * outside vertices empty.
+     */
+    private int allocate() {
+        int f;
+        if (0 < freeCount) {
+            f = free[--freeCount];
+        } else {
+            if (created.length == size) {
+                grow();
+            }
+            f = size++;
+        }
+        created[f] = createdCount++;
+        discarded[f] = false;
+        lastVisit[f] = 0;
+        conflictHead[f] = NULL;
+        conflictTail[f] = NULL;
+        for (int k = 0; k < 4; k++) {
+            neighbor[4 * f + k] = NULL;
+        }
+        return f;
+    }
+
+    private void grow() {
+        int capacity = 2 * created.length;
+        corner = Arrays.copyOf(corner, 4 * capacity);
+        neighbor = Arrays.copyOf(neighbor, 4 * capacity);
+        plane = Arrays.copyOf(plane, 8 * capacity);
+        created = Arrays.copyOf(created, capacity);
+        discarded = Arrays.copyOf(discarded, capacity);
+        lastVisit = Arrays.copyOf(lastVisit, capacity);
+        conflictHead = Arrays.copyOf(conflictHead, capacity);
+        conflictTail = Arrays.copyOf(conflictTail, capacity);
+    }
+
+    /*
+     * Makes the slot of a discarded facet available for a new facet. The
+     * facet must not be referenced by any facet which is not discarded.
+     */
+    void release(int f) {
+        if (free.length == freeCount) {
+            free = Arrays.copyOf(free, 2 * free.length);
+        }
+        free[freeCount++] = f;
+    }
+
+    /*
+     * Creates facet with the given corners. Its outer side is the positive
+     * side of Predicates.orient, callers are responsible for the order of
+     * corners.
+     */
+    int create(int ia, int ib, int ic, int id) {
+        int f = allocate();
+        setCorners(f, ia, ib, ic, id);
+        double[] a = vertices[ia].coordinates;
+        double[] b = vertices[ib].coordinates;
+        double[] c = vertices[ic].coordinates;
+        double[] d = vertices[id].coordinates;
+
+        // orient(a, b, c, d, p) is the dot product of the coefficients with
+        // (p - d, |p - d|^2), the lift relative to d is exact up to rounding
+        double[] u = new double[4];
+        double[] v = new double[4];
+        double[] w = new double[4];
+        for (int i = 0; i < 3; i++) {
+            u[i] = a[i] - d[i];
+            v[i] = b[i] - d[i];
+            w[i] = c[i] - d[i];
+        }
+        u[3] = u[0] * u[0] + u[1] * u[1] + u[2] * u[2];
+        v[3] = v[0] * v[0] + v[1] * v[1] + v[2] * v[2];
+        w[3] = w[0] * w[0] + w[1] * w[1] + w[2] * w[2];
+        int i = 8 * f;
+        plane[i] = minor(u, v, w, 1, 2, 3);
+        plane[i + 1] = -minor(u, v, w, 0, 2, 3);
+        plane[i + 2] = minor(u, v, w, 0, 1, 3);
+        plane[i + 3] = -minor(u, v, w, 0, 1, 2);
+        // the entries of minors are computed with relative error below
+        // 6 epsilon, the bound is a generous multiple of the total error
+        plane[i + 4] = ERROR_BOUND * permanent(u, v, w, 1, 2, 3);
+        plane[i + 5] = ERROR_BOUND * permanent(u, v, w, 0, 2, 3);
+        plane[i + 6] = ERROR_BOUND * permanent(u, v, w, 0, 1, 3);
+        plane[i + 7] = ERROR_BOUND * permanent(u, v, w, 0, 1, 2);
+        return f;
+    }
+
+    private static double minor(double[] u, double[] v, double[] w, int i,
+            int j, int k) {
+        return u[i] * (v[j] * w[k] - v[k] * w[j])
+                - u[j] * (v[i] * w[k] - v[k] * w[i])
+                + u[k] * (v[i] * w[j] - v[j] * w[i]);
+    }
+
+    private static double permanent(double[] u, double[] v, double[] w,
+            int i, int j, int k) {
+        return Math.abs(u[i]) * (Math.abs(v[j] * w[k]) + Math.abs(v[k] * w[j]))
+                + Math.abs(u[j]) * (Math.abs(v[i] * w[k]) + Math.abs(v[k] * w[i]))
+                + Math.abs(u[k]) * (Math.abs(v[i] * w[j]) + Math.abs(v[j] * w[i]));
+    }
+
+    private void setCorners(int f, int a, int b, int c, int d) {
+        corner[4 * f] = a;
+        corner[4 * f + 1] = b;
+        corner[4 * f + 2] = c;
+        corner[4 * f + 3] = d;
+    }
+
+    /*
+     * Approximate value of orient for the vertex, also used to choose the
+     * furthest vertex.
+     */
+    private double distance(int f, double[] p) {
+        double[] d = vertices[corner[4 * f + 3]].coordinates;
+        double tx = p[0] - d[0];
+        double ty = p[1] - d[1];
+        double tz = p[2] - d[2];
+        int i = 8 * f;
+        return plane[i] * tx + plane[i + 1] * ty + plane[i + 2] * tz
+                + plane[i + 3] * (tx * tx + ty * ty + tz * tz);
+    }
+
+    boolean outside(int f, int v) {
+        double[] p = vertices[v].coordinates;
+        double[] d = vertices[corner[4 * f + 3]].coordinates;
+        double tx = p[0] - d[0];
+        double ty = p[1] - d[1];
+        double tz = p[2] - d[2];
+        double tw = tx * tx + ty * ty + tz * tz;
+        int i = 8 * f;
+        double det = plane[i] * tx + plane[i + 1] * ty + plane[i + 2] * tz
+                + plane[i + 3] * tw;
+        double bound = plane[i + 4] * Math.abs(tx) + plane[i + 5] * Math.abs(ty)
+                + plane[i + 6] * Math.abs(tz) + plane[i + 7] * tw;
+        if (det > bound) {
+            return true;
+        }
+        if (-det > bound) {
+            return false;
+        }
+        i = 4 * f;
+        return 0 < Predicates.orient(vertices[corner[i]],
+                vertices[corner[i + 1]], vertices[corner[i + 2]],
+                vertices[corner[i + 3]], vertices[v]);
+    }
+
+    /*
+     * Whether the outer normal of the facet points to negative w, i.e. the
+     * corners form a tetrahedron of the Delaunay triangulation. Facets with
+     * coplanar corners are not lower.
+     */
+    public boolean isLower(int f) {
+        int i = 4 * f;
+        return 0 < Predicates.orient3d(vertices[corner[i]].coordinates,
+                vertices[corner[i + 1]].coordinates,
+                vertices[corner[i + 2]].coordinates,
+                vertices[corner[i + 3]].coordinates);
+    }
+
+    /*
+     * Appends vertex v to the list of vertices outside of the facet, if it
+     * is outside.
+     */
+    boolean add(int f, int v) {
+        if (outside(f, v)) {
+            conflictNext[v] = NULL;
+            if (NULL == conflictHead[f]) {
+                conflictHead[f] = v;
+            } else {
+                conflictNext[conflictTail[f]] = v;
+            }
+            conflictTail[f] = v;
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * The furthest vertex outside of the facet, the first one in case of a
+     * tie, or NULL if there is none.
+     */
+    int extreme(int f) {
+        int res = conflictHead[f];
+        double maxd = (-1.0D / 0.0D);
+        for (int v = conflictHead[f]; NULL != v; v = conflictNext[v]) {
+            double d = distance(f, vertices[v].coordinates);
+            if (d > maxd) {
+                res = v;
+                maxd = d;
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,461 @@
+package algorithms.triangulation.qhull;
+
+import java.math.BigDecimal;
+
+/*
+ * Robust geometric predicates for the 4D convex hull of points lifted to
+ * the paraboloid w = x^2 + y^2 + z^2. Each predicate first evaluates the
+ * determinant in floating point arithmetic and accepts its sign if it is
+ * larger than the error bound (J. R. Shewchuk, Adaptive Precision
+ * Floating-Point Arithmetic and Fast Robust Geometric Predicates, 1997),
+ * otherwise the determinant is computed exactly.
+ *
+ * Exact zeros of the hull predicate are resolved by a symbolic
+ * perturbation of the lifted points (H. Edelsbrunner, E. P. Mucke,
+ * Simulation of Simplicity, 1990) ordered by Vertex.index, so the result
+ * does not depend on the order of the points in the input.
+ */
+public class Predicates {
+
+    private static final double EPSILON = Math.ulp(1.0D) / 2;
+    private static final double O3D_ERROR_BOUND = (7 + 56 * EPSILON) * EPSILON;
+    private static final double ISP_ERROR_BOUND = (16 + 224 * EPSILON) * EPSILON;
+    private static final double ISP_DD_ERROR_BOUND = 1024 * EPSILON * EPSILON;
+    private static final double SPLITTER = 134217729.0D; // 2^27 + 1
+    private static final int PERTURBATIONS = 20; // x, y, z, w of 5 points
+
+    /*
+     * Sign of the determinant | a - d ; b - d ; c - d | of the x, y and z
+     * coordinates, positive if d is below the plane of a, b and c seen
+     * counterclockwise from above.
+     */
+    public static int orient3d(double[] a, double[] b, double[] c,
+            double[] d) {
+        double adx = a[0] - d[0];
+        double bdx = b[0] - d[0];
+        double cdx = c[0] - d[0];
+        double ady = a[1] - d[1];
+        double bdy = b[1] - d[1];
+        double cdy = c[1] - d[1];
+        double adz = a[2] - d[2];
+        double bdz = b[2] - d[2];
+        double cdz = c[2] - d[2];
+
+        double bdxcdy = bdx * cdy;
+        double cdxbdy = cdx * bdy;
+        double cdxady = cdx * ady;
+        double adxcdy = adx * cdy;
+        double adxbdy = adx * bdy;
+        double bdxady = bdx * ady;
+
+        double det = adz * (bdxcdy - cdxbdy) + bdz * (cdxady - adxcdy)
+                + cdz * (adxbdy - bdxady);
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * Math.abs(adz)
+                + (Math.abs(cdxady) + Math.abs(adxcdy)) * Math.abs(bdz)
+                + (Math.abs(adxbdy) + Math.abs(bdxady)) * Math.abs(cdz);
+        double bound = O3D_ERROR_BOUND * permanent;
+        if (det > bound) {
+            return 1;
+        }
+        if (-det > bound) {
+            return -1;
+        }
+
+        BigDecimal[][] m = new BigDecimal[3][3];
+        double[][] p = {a, b, c};
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                m[i][j] = exact(p[i][j]).subtract(exact(d[j]));
+            }
+        }
+        return det(m, 0, 7).signum();
+    }
+
+    /*
+     * Sign of the determinant of rows (p - e, |p - e|^2) for p = a, b, c, d,
+     * which equals the determinant of rows (x, y, z, x^2 + y^2 + z^2, 1) of
+     * the points a, b, c, d, e. It is positive if e is inside of the sphere
+     * circumscribed to a, b, c and d with positive orient3d.
+     */
+    public static int insphere(double[] a, double[] b, double[] c,
+            double[] d, double[] e) {
+        double aex = a[0] - e[0];
+        double bex = b[0] - e[0];
+        double cex = c[0] - e[0];
+        double dex = d[0] - e[0];
+        double aey = a[1] - e[1];
+        double bey = b[1] - e[1];
+        double cey = c[1] - e[1];
+        double dey = d[1] - e[1];
+        double aez = a[2] - e[2];
+        double bez = b[2] - e[2];
+        double cez = c[2] - e[2];
+        double dez = d[2] - e[2];
+
+        double aexbey = aex * bey;
+        double bexaey = bex * aey;
+        double ab = aexbey - bexaey;
+        double bexcey = bex * cey;
+        double cexbey = cex * bey;
+        double bc = bexcey - cexbey;
+        double cexdey = cex * dey;
+        double dexcey = dex * cey;
+        double cd = cexdey - dexcey;
+        double dexaey = dex * aey;
+        double aexdey = aex * dey;
+        double da = dexaey - aexdey;
+        double aexcey = aex * cey;
+        double cexaey = cex * aey;
+        double ac = aexcey - cexaey;
+        double bexdey = bex * dey;
+        double dexbey = dex * bey;
+        double bd = bexdey - dexbey;
+
+        double abc = aez * bc - bez * ac + cez * ab;
+        double bcd = bez * cd - cez * bd + dez * bc;
+        double cda = cez * da + dez * ac + aez * cd;
+        double dab = dez * ab + aez * bd + bez * da;
+
+        double alift = aex * aex + aey * aey + aez * aez;
+        double blift = bex * bex + bey * bey + bez * bez;
+        double clift = cex * cex + cey * cey + cez * cez;
+        double dlift = dex * dex + dey * dey + dez * dez;
+
+        double det = (dlift * abc - clift * dab) + (blift * cda - alift * bcd);
+
+        double aezplus = Math.abs(aez);
+        double bezplus = Math.abs(bez);
+        double cezplus = Math.abs(cez);
+        double dezplus = Math.abs(dez);
+        double aexbeyplus = Math.abs(aexbey);
+        double bexaeyplus = Math.abs(bexaey);
+        double bexceyplus = Math.abs(bexcey);
+        double cexbeyplus = Math.abs(cexbey);
+        double cexdeyplus = Math.abs(cexdey);
+        double dexceyplus = Math.abs(dexcey);
+        double dexaeyplus = Math.abs(dexaey);
+        double aexdeyplus = Math.abs(aexdey);
+        double aexceyplus = Math.abs(aexcey);
+        double cexaeyplus = Math.abs(cexaey);
+        double bexdeyplus = Math.abs(bexdey);
+        double dexbeyplus = Math.abs(dexbey);
+        double permanent = ((cexdeyplus + dexceyplus) * bezplus
+                + (dexbeyplus + bexdeyplus) * cezplus
+                + (bexceyplus + cexbeyplus) * dezplus) * alift
+                + ((dexaeyplus + aexdeyplus) * cezplus
+                + (aexceyplus + cexaeyplus) * dezplus
+                + (cexdeyplus + dexceyplus) * aezplus) * blift
+                + ((aexbeyplus + bexaeyplus) * dezplus
+                + (bexdeyplus + dexbeyplus) * aezplus
+                + (dexaeyplus + aexdeyplus) * bezplus) * clift
+                + ((bexceyplus + cexbeyplus) * aezplus
+                + (cexaeyplus + aexceyplus) * bezplus
+                + (aexbeyplus + bexaeyplus) * cezplus) * dlift;
+        double bound = ISP_ERROR_BOUND * permanent;
+        if (det > bound) {
+            return 1;
+        }
+        if (-det > bound) {
+            return -1;
+        }
+
+        int sign = insphereDoubleDouble(a, b, c, d, e, permanent);
+        if (0 != sign) {
+            return sign;
+        }
+        return insphereExact(a, b, c, d, e);
+    }
+
+    /*
+     * The same determinant in double-double arithmetic, starting from the
+     * exact differences of coordinates. Each operation has absolute error
+     * below a small multiple of epsilon^2 times the sum of the absolute
+     * values of its operands, the bound is a generous multiple of their
+     * accumulation. Returns 0 if the sign is not certain.
+     */
+    private static int insphereDoubleDouble(double[] a, double[] b,
+            double[] c, double[] d, double[] e, double permanent) {
+        double[][] p = {a, b, c, d};
+        double[][][] m = new double[4][4][];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 3; j++) {
+                m[i][j] = ddDifference(p[i][j], e[j]);
+            }
+            m[i][3] = ddSum(ddSum(ddProduct(m[i][0], m[i][0]),
+                    ddProduct(m[i][1], m[i][1])), ddProduct(m[i][2], m[i][2]));
+        }
+        double[][][] xy = new double[4][4][];
+        for (int i = 0; i < 4; i++) {
+            for (int j = i + 1; j < 4; j++) {
+                xy[i][j] = ddDifference(ddProduct(m[i][0], m[j][1]),
+                        ddProduct(m[j][0], m[i][1]));
+            }
+        }
+        double[][] xyz = new double[4][];
+        for (int k = 0; k < 4; k++) {
+            int[] r = rowsWithout(k);
+            xyz[k] = ddSum(ddDifference(
+                    ddProduct(m[r[0]][2], xy[r[1]][r[2]]),
+                    ddProduct(m[r[1]][2], xy[r[0]][r[2]])),
+                    ddProduct(m[r[2]][2], xy[r[0]][r[1]]));
+        }
+        double[] det = ddSum(
+                ddDifference(ddProduct(m[1][3], xyz[1]),
+                ddProduct(m[0][3], xyz[0])),
+                ddDifference(ddProduct(m[3][3], xyz[3]),
+                ddProduct(m[2][3], xyz[2])));
+        double value = det[1] + det[0];
+        double bound = ISP_DD_ERROR_BOUND * permanent;
+        if (value > bound) {
+            return 1;
+        }
+        if (-value > bound) {
+            return -1;
+        }
+        return 0;
+    }
+
+    private static int[] rowsWithout(int k) {
+        int[] r = new int[3];
+        int n = 0;
+        for (int i = 0; i < 4; i++) {
+            if (i != k) {
+                r[n++] = i;
+            }
+        }
+        return r;
+    }
+
+    /*
+     * Double-double numbers are pairs {low, high}, |low| <= ulp(high) / 2.
+     */
+    private static double[] ddDifference(double a, double b) {
+        double x = a - b;
+        double bvirt = a - x;
+        double avirt = x + bvirt;
+        double bround = bvirt - b;
+        double around = a - avirt;
+        return new double[]{around + bround, x};
+    }
+
+    private static double[] ddSum(double[] a, double[] b) {
+        double s = a[1] + b[1];
+        double bvirt = s - a[1];
+        double avirt = s - bvirt;
+        double t = (a[1] - avirt) + (b[1] - bvirt);
+        t += a[0] + b[0];
+        double x = s + t;
+        return new double[]{t - (x - s), x};
+    }
+
+    private static double[] ddDifference(double[] a, double[] b) {
+        return ddSum(a, new double[]{-b[0], -b[1]});
+    }
+
+    private static double[] ddProduct(double[] a, double[] b) {
+        double x = a[1] * b[1];
+        double c = SPLITTER * a[1];
+        double ahi = c - (c - a[1]);
+        double alo = a[1] - ahi;
+        c = SPLITTER * b[1];
+        double bhi = c - (c - b[1]);
+        double blo = b[1] - bhi;
+        double y = alo * blo - (((x - ahi * bhi) - alo * bhi) - ahi * blo);
+        y += a[1] * b[0] + a[0] * b[1];
+        double h = x + y;
+        return new double[]{y - (h - x), h};
+    }
+
+    /*
+     * The same determinant as in insphere, evaluated by exact expansion
+     * arithmetic.
+     */
+    private static int insphereExact(double[] a, double[] b, double[] c,
+            double[] d, double[] e) {
+        double[][] p = {a, b, c, d};
+        double[][][] m = new double[4][4][];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 3; j++) {
+                m[i][j] = Expansion.difference(p[i][j], e[j]);
+            }
+            m[i][3] = Expansion.sum(Expansion.sum(
+                    Expansion.product(m[i][0], m[i][0]),
+                    Expansion.product(m[i][1], m[i][1])),
+                    Expansion.product(m[i][2], m[i][2]));
+        }
+
+        // minors of the x and y columns
+        double[][][] xy = new double[4][4][];
+        for (int i = 0; i < 4; i++) {
+            for (int j = i + 1; j < 4; j++) {
+                xy[i][j] = Expansion.difference(
+                        Expansion.product(m[i][0], m[j][1]),
+                        Expansion.product(m[j][0], m[i][1]));
+            }
+        }
+
+        // minors of the x, y and z columns without row k, expanded along z
+        double[][] xyz = new double[4][];
+        for (int k = 0; k < 4; k++) {
+            int[] r = new int[3];
+            int n = 0;
+            for (int i = 0; i < 4; i++) {
+                if (i != k) {
+                    r[n++] = i;
+                }
+            }
+            xyz[k] = Expansion.sum(Expansion.difference(
+                    Expansion.product(m[r[0]][2], xy[r[1]][r[2]]),
+                    Expansion.product(m[r[1]][2], xy[r[0]][r[2]])),
+                    Expansion.product(m[r[2]][2], xy[r[0]][r[1]]));
+        }
+
+        // expansion along the lift column
+        double[] det = Expansion.difference(
+                Expansion.product(m[1][3], xyz[1]),
+                Expansion.product(m[0][3], xyz[0]));
+        det = Expansion.sum(det, Expansion.difference(
+                Expansion.product(m[3][3], xyz[3]),
+                Expansion.product(m[2][3], xyz[2])));
+        return Expansion.sign(det);
+    }
+
+    /*
+     * Sign of the determinant of rows (x, y, z, w, 1) of the lifted points,
+     * positive if e is on the positive side of the hyperplane through a, b,
+     * c and d. Never zero, ties are broken by the symbolic perturbation.
+     */
+    public static int orient(Vertex a, Vertex b, Vertex c, Vertex d,
+            Vertex e) {
+        int sign = insphere(a.coordinates, b.coordinates, c.coordinates,
+                d.coordinates, e.coordinates);
+        if (0 != sign) {
+            return sign;
+        }
+        return perturbed(new Vertex[]{a, b, c, d, e});
+    }
+
+    /*
+     * Each coordinate of each lifted point is perturbed by a distinct
+     * power of a symbolic epsilon, lifted coordinates by the largest ones
+     * and points with lower index by larger ones. The sign is given by the
+     * first nonzero coefficient of the determinant as a polynomial in
+     * epsilon. Bit k of a mask stands for the k-th largest perturbation and
+     * the coefficient of their product is the determinant with the
+     * perturbed rows replaced by unit vectors.
+     */
+    private static int perturbed(Vertex[] points) {
+        int n = points.length;
+        int[] byRank = new int[n];
+        for (int i = 0; i < n; i++) {
+            int rank = 0;
+            for (int j = 0; j < n; j++) {
+                if (points[j].index < points[i].index) {
+                    rank++;
+                }
+            }
+            byRank[rank] = i;
+        }
+
+        // the first terms are the perturbations of single lifted
+        // coordinates, their coefficients are orientations of the other
+        // four points
+        for (int rank = 0; rank < n; rank++) {
+            int row = byRank[rank];
+            double[][] others = new double[n - 1][];
+            for (int i = 0, j = 0; i < n; i++) {
+                if (i != row) {
+                    others[j++] = points[i].coordinates;
+                }
+            }
+            int sign = orient3d(others[0], others[1], others[2], others[3]);
+            if (0 != sign) {
+                return 1 == row % 2 ? sign : -sign;
+            }
+        }
+
+        BigDecimal[][] m = new BigDecimal[n][n];
+        for (int i = 0; i < n; i++) {
+            BigDecimal lift = BigDecimal.ZERO;
+            for (int j = 0; j < 3; j++) {
+                m[i][j] = exact(points[i].coordinates[j]);
+                lift = lift.add(m[i][j].multiply(m[i][j]));
+            }
+            m[i][3] = lift;
+            m[i][4] = BigDecimal.ONE;
+        }
+
+        BigDecimal[][] t = new BigDecimal[n][];
+        for (int mask = 1 << n; mask < (1 << PERTURBATIONS); mask++) {
+            int rows = 0;
+            int columns = 0;
+            int[] column = new int[n];
+            boolean valid = true;
+            for (int k = 0; valid && k < PERTURBATIONS; k++) {
+                if (0 == (mask & (1 << k))) {
+                    continue;
+                }
+                int row;
+                int col;
+                if (k < n) {
+                    row = byRank[k];
+                    col = 3;
+                } else {
+                    row = byRank[(k - n) / 3];
+                    col = (k - n) % 3;
+                }
+                valid = 0 == (rows & (1 << row)) && 0 == (columns & (1 << col));
+                rows |= 1 << row;
+                columns |= 1 << col;
+                column[row] = col;
+            }
+            if (!valid) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (0 == (rows & (1 << i))) {
+                    t[i] = m[i];
+                } else {
+                    t[i] = new BigDecimal[n];
+                    for (int j = 0; j < n; j++) {
+                        t[i][j] = j == column[i] ? BigDecimal.ONE
+                                : BigDecimal.ZERO;
+                    }
+                }
+            }
+            int sign = det(t, 0, (1 << n) - 1).signum();
+            if (0 != sign) {
+                return sign;
+            }
+        }
+        throw new RuntimeException("Symbolic perturbation failed.");
+    }
+
+    private static BigDecimal exact(double d) {
+        return new BigDecimal(d);
+    }
+
+    /*
+     * Determinant of rows from..n-1 and given columns, by expansion along
+     * the first row.
+     */
+    private static BigDecimal det(BigDecimal[][] m, int from, int columns) {
+        if (from == m.length) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal sum = BigDecimal.ZERO;
+        boolean plus = true;
+        for (int j = 0; j < m.length; j++) {
+            if (0 == (columns & (1 << j))) {
+                continue;
+            }
+            if (0 != m[from][j].signum()) {
+                BigDecimal term = m[from][j].multiply(
+                        det(m, from + 1, columns & ~(1 << j)));
+                sum = plus ? sum.add(term) : sum.subtract(term);
+            }
+            plus = !plus;
+        }
+        return sum;
+    }
+}
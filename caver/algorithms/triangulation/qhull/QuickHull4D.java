@@ -1,5 +1,7 @@
 package algorithms.triangulation.qhull;
 
+import java.util.Arrays;
+
 public class QuickHull4D {
 
     public static long stage1;
@@ -8,6 +10,14 @@ public class QuickHull4D {
     public static long stage4;
     public static long stage5;
     public static long stage6;
+    private FacetStore store;
+    private int[] discardedVertices;
+    private int discardedCount;
+    private int[] discardedFacets;
+    private int discardedFacetCount;
+    private int[] horizonCorner;
+    private int[] horizonOutside;
+    private int horizonCount;
 
     private void locateMaxAndMin(Vertex[] vertices) {
         for (int i = 0; i < vertices.length; i++) {
@@ -34,163 +44,240 @@ public class QuickHull4D {
         }
     }
 
-    private void visit(Facet face, OptimizedVector discardedVertices, 
-            OptimizedVector horizon, Vertex vertex, int sequence) {
-        discardedVertices.append(face.associatedVertices);
+    /*
+     * Marks facets visible from the vertex as discarded, collects their
+     * outside vertices and the ridges of the horizon together with the
+     * facets behind them.
+     */
+    private void visit(int face, int vertex, int sequence) {
+        FacetStore s = store;
+        for (int v = s.conflictHead[face]; FacetStore.NULL != v;
+                v = s.conflictNext[v]) {
+            if (discardedVertices.length == discardedCount) {
+                discardedVertices = Arrays.copyOf(discardedVertices,
+                        2 * discardedCount);
+            }
+            discardedVertices[discardedCount++] = v;
+        }
+        if (discardedFacets.length == discardedFacetCount) {
+            discardedFacets = Arrays.copyOf(discardedFacets,
+                    2 * discardedFacetCount);
+        }
+        discardedFacets[discardedFacetCount++] = face;
 
         for (int i = 0; i < 4; i++) {
-            Facet neighbor = face.neighbor[i];
-            if (!neighbor.discarded) {
-                if (neighbor.lastVisit < sequence) {
-                    neighbor.lastVisit = sequence;
-                    if (neighbor.outside4D(vertex)) {
-                        neighbor.discarded = true;
-                        visit(neighbor, discardedVertices, horizon, 
-                                vertex, sequence);
+            int neighbor = s.neighbor[4 * face + i];
+            if (!s.discarded[neighbor]) {
+                if (s.lastVisit[neighbor] < sequence) {
+                    s.lastVisit[neighbor] = sequence;
+                    if (s.outside(neighbor, vertex)) {
+                        s.discarded[neighbor] = true;
+                        visit(neighbor, vertex, sequence);
                     } else {
-                        Edge edge = new Edge(face.corner[i], 
-                                face.corner[((i + 1) % 4)], 
-                                face.corner[((i + 2) % 4)], neighbor);
-
-                        horizon.addElement(edge);
+                        addHorizon(face, i, neighbor);
                     }
                 } else {
-                    Edge edge = new Edge(face.corner[i],
-                            face.corner[((i + 1) % 4)], 
-                            face.corner[((i + 2) % 4)], neighbor);
-
-                    horizon.addElement(edge);
+                    addHorizon(face, i, neighbor);
                 }
             }
         }
     }
 
-    public OptimizedVector build4D(Vertex[] vertices) {
-        OptimizedVector faces = new OptimizedVector(1000);
+    /*
+     * Adds the ridge of corners i, i+1 and i+2 of the visible facet. Together
+     * with the new vertex on the place of the corner i+3 they form a new
+     * facet with the same orientation, which is the order of the ridge
+     * followed by the vertex for even i, otherwise the first two corners
+     * are swapped.
+     */
+    private void addHorizon(int face, int i, int outside) {
+        if (horizonOutside.length == horizonCount) {
+            horizonCorner = Arrays.copyOf(horizonCorner, 6 * horizonCount);
+            horizonOutside = Arrays.copyOf(horizonOutside, 2 * horizonCount);
+        }
+        int[] corner = store.corner;
+        int first = corner[4 * face + i];
+        int second = corner[4 * face + (i + 1) % 4];
+        if (1 == i % 2) {
+            int temp = first;
+            first = second;
+            second = temp;
+        }
+        horizonCorner[3 * horizonCount] = first;
+        horizonCorner[3 * horizonCount + 1] = second;
+        horizonCorner[3 * horizonCount + 2] = corner[4 * face + (i + 2) % 4];
+        horizonOutside[horizonCount++] = outside;
+    }
+
+    /*
+     * Sets the neighbor of the facet outside of the horizon ridge
+     * (start, middle, end) to the new facet. Returns false if the ridge
+     * was not found.
+     */
+    private boolean linkOutside(int outside, int start, int middle, int end,
+            int newFacet) {
+        int[] corner = store.corner;
+        int o = 4 * outside;
+        for (int co = 0; co < 4; co++) {
+            int c0 = corner[o + co];
+            int c1 = corner[o + (co + 1) % 4];
+            int c2 = corner[o + (co + 2) % 4];
+            if ((c0 == start && ((c1 == end && c2 == middle)
+                    || (c1 == middle && c2 == end)))
+                    || (c0 == middle && ((c1 == start && c2 == end)
+                    || (c1 == end && c2 == start)))
+                    || (c0 == end && ((c1 == middle && c2 == start)
+                    || (c1 == start && c2 == middle)))) {
+                store.neighbor[o + co] = newFacet;
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /*
+     * Computes the convex hull of the vertices, which are reordered by
+     * the call. Corners of the resulting facets are indices to the
+     * reordered array.
+     */
+    public FacetStore build4D(Vertex[] vertices) {
         locateMaxAndMin(vertices);
-        Facet face1;
-        faces.addElement(face1 = new Facet(vertices[0], vertices[1],
-                vertices[2], vertices[3]));
-        Facet face2;
-        faces.addElement(face2 = new Facet(vertices[0], vertices[2],
-                vertices[1], vertices[3]));
-
-        Vertex middle = new Vertex((vertices[0].coordinates[0] +
-                vertices[1].coordinates[0] + vertices[2].coordinates[0] 
-                + vertices[3].coordinates[0]) / 4.0D, 
-                (vertices[0].coordinates[1] + vertices[1].coordinates[1] + 
-                vertices[2].coordinates[1] + vertices[3].coordinates[1]) 
-                / 4.0D, (vertices[0].coordinates[2] +
-                vertices[1].coordinates[2] + vertices[2].coordinates[2] + 
-                vertices[3].coordinates[2]) / 4.0D, 
-                (vertices[0].coordinates[3] + vertices[1].coordinates[3] +
-                vertices[2].coordinates[3] + vertices[3].coordinates[3]) /
-                4.0D);
+        store = new FacetStore(vertices);
+        FacetStore s = store;
+
+        // the same hyperplane with both orientations
+        int face1 = s.create(0, 1, 2, 3);
+        int face2 = s.create(0, 2, 1, 3);
 
         for (int i = 0; i < 4; i++) {
-            face1.neighbor[i] = face2;
-            face2.neighbor[i] = face1;
+            s.neighbor[4 * face1 + i] = face2;
+            s.neighbor[4 * face2 + i] = face1;
         }
 
         for (int i = 4; i < vertices.length; i++) {
-            if (!face1.add4D(vertices[i])) {
-                face2.add4D(vertices[i]);
+            if (!s.add(face1, i)) {
+                s.add(face2, i);
             }
         }
 
-        OptimizedVector discardedVertices = new OptimizedVector(100);
+        discardedVertices = new int[100];
+        discardedFacets = new int[100];
+        horizonCorner = new int[60];
+        horizonOutside = new int[20];
+        int[] newFacets = new int[20];
 
-        OptimizedVector horizon = new OptimizedVector(20);
+        // facets are processed in the order of creation, the slots of
+        // discarded facets may be reused, so each entry remembers the
+        // creation number of the facet it was queued for
+        int[] queue = new int[1024];
+        int[] queueCreated = new int[1024];
+        int head = 0;
+        int tail = 0;
+        queue[tail] = face1;
+        queueCreated[tail] = s.created[face1];
+        tail++;
+        queue[tail] = face2;
+        queueCreated[tail] = s.created[face2];
+        tail++;
+        int last = face2;
 
-        for (int i = 0; i < faces.elementCount; i++) {
-            int oldFaces = faces.elementCount;
-            discardedVertices.elementCount = 0;
-            Facet selected = (Facet) faces.elementAt(i);
+        RidgeTable ridges = new RidgeTable();
+        int sequence = 0;
 
-            if ((selected.discarded) || 
-                    (selected.associatedVertices.elementCount == 0)) {
+        while (head != tail) {
+            int selected = queue[head];
+            int selectedCreated = queueCreated[head];
+            head = (head + 1) & (queue.length - 1);
+
+            if (s.created[selected] != selectedCreated
+                    || s.discarded[selected]
+                    || FacetStore.NULL == s.conflictHead[selected]) {
                 continue;
             }
-            Vertex vertex = selected.extreme4D();
-
-            horizon.elementCount = 0;
-            selected.discarded = true;
-            selected.lastVisit = (++Facet.seq);
-            visit(selected, discardedVertices, horizon, vertex, Facet.seq);
-            for (int iii = 0; iii < horizon.elementCount; iii++) {
-                Edge e = (Edge) horizon.elementData[iii];
-                Facet newFacet = new Facet(e.start, e.middle, e.end, vertex, middle);
-
-                newFacet.neighbor[0] = e.outside;
-                e.inside = newFacet;
-                for (int co = 0; co < 4; co++) {
-                    if (((e.outside.corner[co] != e.start) ||
-                            (((e.outside.corner[((co + 1) % 4)] != e.end) 
-                            || (e.outside.corner[((co + 2) % 4)] != e.middle))
-                            && ((e.outside.corner[((co + 1) % 4)] != e.middle)
-                            || (e.outside.corner[((co + 2) % 4)] != e.end))))
-                            && ((e.outside.corner[co] != e.middle) || 
-                            (((e.outside.corner[((co + 1) % 4)] != e.start) 
-                            || (e.outside.corner[((co + 2) % 4)] != e.end))
-                            && ((e.outside.corner[((co + 1) % 4)] != e.end) 
-                            || (e.outside.corner[((co + 2) % 4)] != e.start))))
-                            && ((e.outside.corner[co] != e.end) || 
-                            (((e.outside.corner[((co + 1) % 4)] != e.middle) 
-                            || (e.outside.corner[((co + 2) % 4)] != e.start)
-                            ) && ((e.outside.corner[((co + 1) % 4)] != e.start)
-                            || (e.outside.corner[((co + 2) % 4)]
-                            != e.middle))))) {
-                        continue;
-                    }
+            int vertex = s.extreme(selected);
 
-                    e.outside.neighbor[co] = newFacet;
-                    break;
-                }
+            discardedCount = 0;
+            discardedFacetCount = 0;
+            horizonCount = 0;
+            s.discarded[selected] = true;
+            s.lastVisit[selected] = (++sequence);
+            visit(selected, vertex, sequence);
 
-                faces.addElement(newFacet);
+            if (newFacets.length < horizonCount) {
+                newFacets = new int[2 * horizonCount];
             }
+            boolean linked = true;
+            for (int iii = 0; iii < horizonCount; iii++) {
+                int start = horizonCorner[3 * iii];
+                int mid = horizonCorner[3 * iii + 1];
+                int end = horizonCorner[3 * iii + 2];
+                int outside = horizonOutside[iii];
+                int newFacet = s.create(start, mid, end, vertex);
+                s.neighbor[4 * newFacet] = outside;
+                linked &= linkOutside(outside, start, mid, end, newFacet);
+                newFacets[iii] = newFacet;
 
-            for (int iii = oldFaces; iii < faces.elementCount; iii++) {
-                Facet current = (Facet) faces.elementData[iii];
+                if ((tail + 1 & (queue.length - 1)) == head) {
+                    int[] q = new int[2 * queue.length];
+                    int[] qc = new int[2 * queue.length];
+                    int n = 0;
+                    for (int k = head; k != tail; k = (k + 1) & (queue.length - 1)) {
+                        q[n] = queue[k];
+                        qc[n] = queueCreated[k];
+                        n++;
+                    }
+                    queue = q;
+                    queueCreated = qc;
+                    head = 0;
+                    tail = n;
+                }
+                queue[tail] = newFacet;
+                queueCreated[tail] = s.created[newFacet];
+                tail = (tail + 1) & (queue.length - 1);
+            }
 
+            // each ridge of a new facet, except the one on the horizon,
+            // is shared with exactly one other new facet
+            ridges.reset(horizonCount);
+            for (int iii = 0; iii < horizonCount; iii++) {
+                int current = newFacets[iii];
                 for (int f = 1; f < 4; f++) {
-                    for (int y = iii + 1; (y < faces.elementCount)
-                            && (current.neighbor[f] == null); y++) {
-                        Facet testFace = (Facet) faces.elementData[y];
-                        for (int u = 1; u < 4; u++) {
-                            if (((testFace.corner[u] != current.corner[f]) ||
-                                    (((testFace.corner[((u + 1) % 4)] != current.corner[((f + 2) % 4)]) || (testFace.corner[((u + 2) % 4)] != current.corner[((f + 1) % 4)])) && ((testFace.corner[((u + 1) % 4)] != current.corner[((f + 1) % 4)]) || (testFace.corner[((u + 2) % 4)] != current.corner[((f + 2) % 4)])))) && ((testFace.corner[u] != current.corner[((f + 1) % 4)]) || (((testFace.corner[((u + 1) % 4)] != current.corner[f]) || (testFace.corner[((u + 2) % 4)] != current.corner[((f + 2) % 4)])) && ((testFace.corner[((u + 1) % 4)] != current.corner[((f + 2) % 4)]) || (testFace.corner[((u + 2) % 4)] != current.corner[f])))) && ((testFace.corner[u] != current.corner[((f + 2) % 4)]) || (((testFace.corner[((u + 1) % 4)] != current.corner[((f + 1) % 4)]) || (testFace.corner[((u + 2) % 4)] != current.corner[f])) && ((testFace.corner[((u + 1) % 4)] != current.corner[f]) || (testFace.corner[((u + 2) % 4)] != current.corner[((f + 1) % 4)]))))) {
-                                continue;
-                            }
-
-                            current.neighbor[f] = testFace;
-                            testFace.neighbor[u] = current;
-
-                            break;
-                        }
-
+                    if (FacetStore.NULL == s.neighbor[4 * current + f]) {
+                        ridges.link(s, current, f, vertex);
                     }
-
                 }
-
             }
 
-            for (int currentPoint = 0; currentPoint < discardedVertices.elementCount; currentPoint++) {
-                Vertex tmpVertex = (Vertex) discardedVertices.elementData[currentPoint];
+            // the facet created last before this step is tried first, as
+            // in the original implementation
+            for (int currentPoint = 0; currentPoint < discardedCount; currentPoint++) {
+                int tmpVertex = discardedVertices[currentPoint];
                 if (tmpVertex == vertex) {
                     continue;
                 }
-                tmpVertex.isAssigned = false;
-                for (int fc = oldFaces - 1; fc < faces.elementCount; fc++) {
-                    Facet tmpFace = (Facet) faces.elementData[fc];
-                    if ((!tmpFace.discarded)
-                            && ((tmpVertex.isAssigned = tmpFace.add4D(tmpVertex)))) {
-                        break;
-                    }
+                Vertex v = vertices[tmpVertex];
+                v.isAssigned = false;
+                if (!s.discarded[last]) {
+                    v.isAssigned = s.add(last, tmpVertex);
+                }
+                for (int fc = 0; !v.isAssigned && fc < horizonCount; fc++) {
+                    v.isAssigned = s.add(newFacets[fc], tmpVertex);
+                }
+            }
+            if (0 < horizonCount) {
+                last = newFacets[horizonCount - 1];
+            }
+
+            // a discarded facet may still be referenced if its neighbor
+            // was not relinked, such slots are never reused
+            if (linked) {
+                for (int i = 0; i < discardedFacetCount; i++) {
+                    s.release(discardedFacets[i]);
                 }
             }
         }
-        return faces;
+        store = null;
+        s.finish();
+        return s;
     }
 }
@@ -0,0 +1,80 @@
+package algorithms.triangulation.qhull;
+
+import java.util.Random;
+
+/*
+ * Measures the time of the 4D convex hull construction for random points
+ * filling a ball with the density of protein atoms approximated by
+ * spheres, or lying close to a sphere surface, where the horizons of the
+ * inserted points are much larger.
+ * Usage: QuickHull4DBenchmark [points] [repetitions] [seed] [ball|shell]
+ */
+public class QuickHull4DBenchmark {
+
+    private static final double DENSITY = 0.1; // points per cubic angstrom
+
+    public static Vertex[] createPoints(int n, long seed, boolean shell) {
+        Random random = new Random(seed);
+        double radius = Math.cbrt(3 * n / (4 * Math.PI * DENSITY));
+        Vertex[] vertices = new Vertex[n];
+        int i = 0;
+        while (i < n) {
+            double x = (2 * random.nextDouble() - 1) * radius;
+            double y = (2 * random.nextDouble() - 1) * radius;
+            double z = (2 * random.nextDouble() - 1) * radius;
+            double d = Math.sqrt(x * x + y * y + z * z);
+            if (shell && 0 < d) {
+                double s = radius * (1 + 0.001 * random.nextDouble()) / d;
+                x *= s;
+                y *= s;
+                z *= s;
+                d = 0;
+            }
+            if (d <= radius) {
+                vertices[i] = new Vertex(x, y, z);
+                vertices[i].addDimension();
+                vertices[i].index = i;
+                i++;
+            }
+        }
+        return vertices;
+    }
+
+    public static void main(String[] args) {
+        int n = 100000;
+        int repetitions = 3;
+        long seed = 1;
+        boolean shell = false;
+        if (0 < args.length) {
+            n = Integer.parseInt(args[0]);
+        }
+        if (1 < args.length) {
+            repetitions = Integer.parseInt(args[1]);
+        }
+        if (2 < args.length) {
+            seed = Long.parseLong(args[2]);
+        }
+        if (3 < args.length) {
+            shell = "shell".equals(args[3]);
+        }
+
+        for (int r = 0; r < repetitions; r++) {
+            Vertex[] vertices = createPoints(n, seed, shell);
+            System.gc();
+            long start = System.nanoTime();
+            FacetStore faces = new QuickHull4D().build4D(vertices);
+            long time = System.nanoTime() - start;
+
+            int lower = 0;
+            for (int f = 0; f < faces.size(); f++) {
+                if (!faces.isDiscarded(f) && faces.isLower(f)) {
+                    lower++;
+                }
+            }
+            System.out.println(n + " points, " + faces.getCreatedCount()
+                    + " facets created, " + faces.size() + " slots, "
+                    + lower + " tetrahedrons, "
+                    + (time / 1000000) + " ms");
+        }
+    }
+}
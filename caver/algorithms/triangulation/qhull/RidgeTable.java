@@ -0,0 +1,85 @@
+package algorithms.triangulation.qhull;
+
+import java.util.Arrays;
+
+/*
+ * Links neighboring facets created in one step of the hull construction.
+ * All such facets share the new vertex (apex), so each of their ridges
+ * containing the apex is identified by the remaining two corners. Open
+ * addressing over primitive arrays, reused between steps to avoid
+ * allocations.
+ */
+class RidgeTable {
+
+    private static final int EMPTY = -1;
+    private static final int CONSUMED = -2;
+    private int[] first = new int[0];
+    private int[] second;
+    private int[] facets;
+    private int[] sides;
+    private int[] used = new int[0];
+    private int usedCount;
+    private int mask;
+
+    /*
+     * Prepares the table for ridges of the given number of new facets.
+     */
+    void reset(int facetCount) {
+        for (int i = 0; i < usedCount; i++) {
+            first[used[i]] = EMPTY;
+        }
+        usedCount = 0;
+
+        int capacity = Integer.highestOneBit(Math.max(4, 6 * facetCount)) * 2;
+        if (first.length < capacity) {
+            first = new int[capacity];
+            Arrays.fill(first, EMPTY);
+            second = new int[capacity];
+            facets = new int[capacity];
+            sides = new int[capacity];
+            used = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    /*
+     * Connects neighbor side of the facet with the facet having the same
+     * ridge, if it was already inserted, otherwise inserts the ridge.
+     */
+    void link(FacetStore store, int facet, int side, int apex) {
+        int a = EMPTY;
+        int b = EMPTY;
+        for (int k = 0; k < 3; k++) {
+            int v = store.corner[4 * facet + (side + k) % 4];
+            if (v != apex) {
+                if (EMPTY == a) {
+                    a = v;
+                } else {
+                    b = v;
+                }
+            }
+        }
+
+        int h = (a + b) * 0x9E3779B1;
+        h ^= (h >>> 16);
+        h &= mask;
+        while (EMPTY != first[h]) {
+            if (CONSUMED != facets[h]
+                    && ((first[h] == a && second[h] == b)
+                    || (first[h] == b && second[h] == a))) {
+                store.neighbor[4 * facet + side] = facets[h];
+                store.neighbor[4 * facets[h] + sides[h]] = facet;
+                // a degenerate horizon may contain more than two facets with
+                // the same ridge, the next one has to be linked to another
+                facets[h] = CONSUMED;
+                return;
+            }
+            h = (h + 1) & mask;
+        }
+        first[h] = a;
+        second[h] = b;
+        facets[h] = facet;
+        sides[h] = side;
+        used[usedCount++] = h;
+    }
+}
@@ -16,6 +16,7 @@ import chemistry.pdb.exceptions.ResidueNotFoundException;
 import geometry.primitives.Point;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,10 +52,14 @@ public class CalculationSettings { // Calculation Settings
     private Set<Integer> startingAtoms_ = new TreeSet<Integer>();
     private Set<String> startingResidues_ = new TreeSet<String>();
     private Point startingPoint_ = null;
+    private List<String> originNames_ = new ArrayList<String>();
+    private String origin_ = null; // name of the starting point, if named
+    private List<String> probeRadii_ = new ArrayList<String>(); // of sweep
     private int maxNumberOfTunnels = 10000;
     private boolean loadTunnels = false;
     private boolean loadClusterTree = false;
     private double shellRadius = 3.0;
+    private double configuredShellRadius = 3.0; // shellRadius changes by frame
     private double shellDepth = 4.0;
     private double probeRadius = 0.9;
     private int maxOutputClusters = 999;
@@ -74,7 +79,7 @@ public class CalculationSettings { // Calculation Settings
     private int timeSparsity = 1;
     private int firstFrame = 1;
     private int lastFrame = 100000;
-    private double maxShatter = 0.001;
+    private double maxShatter = 0;
     private double dissimilarRadiusTolerance = 1.01;
     private double minDissimilarRadiusTolerance = 1.01;
     private Random random;
@@ -90,6 +95,7 @@ public class CalculationSettings { // Calculation Settings
     private double defaultMaxDistance = 3;
     private double maxDistance = defaultMaxDistance;
     private double maxLimitingRadius = 100;
+    private boolean costFunctionQuadrature = true;
     private boolean saveApproximation = false;
     private boolean automaticShellRadius = false;
     private double bottleneckMultiplier = 2;
@@ -111,6 +117,8 @@ public class CalculationSettings { // Calculation Settings
     private int waypointCount = 0;
     private double lengthImportance = 1;
     private boolean admin = false;
+    private int numberOfThreads = 1;
+    private ForkJoinPool threadPool;
     private boolean computeBottleneckResidues = false;
     private double correctionShift = 0.3;
     private boolean correctApproximation = true;
@@ -217,6 +225,27 @@ public class CalculationSettings { // Calculation Settings
     };
     private ClusteringMethod clusteringMethod = ClusteringMethod.AVERAGE_LINK;
 
+    public enum TriangulationOrder {
+
+        INPUT, HILBERT, BRIO
+    };
+    private TriangulationOrder triangulationOrder = TriangulationOrder.INPUT;
+    private boolean incrementalTriangulation = false;
+    private double incrementalTriangulationMaxInvalid = 0.05;
+    private double cropRadius = 0; // zero for the whole structure
+    private File voronoiCacheDir = null;
+    private int parallelTriangulationBlockSize = 0; // zero for serial
+    private boolean boundedTunnelSearch = false;
+
+    public enum TunnelComputationType {
+
+        DIJKSTRA, K_SHORTEST_PATHS
+    };
+    private TunnelComputationType tunnelComputation =
+            TunnelComputationType.DIJKSTRA;
+    private double minPathDivergence = 0; // zero if paths need not diverge
+    private double duplicatePathDivergence = 0; // zero if all are created
+
     public Random getRandom() {
         return random;
     }
@@ -382,6 +411,8 @@ public class CalculationSettings { // Calculation Settings
     public final void readFile() throws IOException, SettingsException {
         BufferedReader br = new BufferedReader(new FileReader(getConfigFile()));
         String line;
+        String originName = null; // starting_point_* lines belong to it
+        boolean unnamed = false;
         while (null != (line = br.readLine())) {
             if (line.trim().length() == 0 || line.trim().startsWith("#")) {
                 continue;
@@ -412,22 +443,45 @@ public class CalculationSettings { // Calculation Settings
                     layersCount = Integer.parseInt(value);
                 } else if ("clustering_threshold".equals(name)) {
                     clusteringThreshold = Double.parseDouble(value);
+                } else if ("starting_point_name".equals(name)) {
+                    if (value.isEmpty() || value.contains("/")
+                            || value.contains("\\") || value.startsWith(".")
+                            || new File(outDir_, value).equals(analysisDir_)
+                            || new File(outDir_, value).equals(dataDir_)
+                            || new File(outDir_, value).equals(pymolDir_)
+                            || new File(outDir_, value).equals(vmdDir_)
+                            || originNames_.contains(value)) {
+                        throw new SettingsException("Names must be unique "
+                                + "and usable as directory names.");
+                    }
+                    originNames_.add(value);
+                    originName = value;
                 } else if ("starting_point_atom".equals(name)) {
                     StringTokenizer ist = new StringTokenizer(rest, seps);
                     while (ist.hasMoreTokens()) {
-                        startingAtoms_.add(Integer.parseInt(
-                                ist.nextToken().trim()));
+                        int atom = Integer.parseInt(ist.nextToken().trim());
+                        if (isSelected(originName)) {
+                            startingAtoms_.add(atom);
+                        }
                     }
+                    unnamed |= null == originName;
                 } else if ("starting_point_residue".equals(name)) {
                     StringTokenizer ist = new StringTokenizer(rest, seps);
                     while (ist.hasMoreTokens()) {
-                        startingResidues_.add(ist.nextToken().trim());
+                        String residue = ist.nextToken().trim();
+                        if (isSelected(originName)) {
+                            startingResidues_.add(residue);
+                        }
                     }
+                    unnamed |= null == originName;
                 } else if ("starting_point_coordinates".equals(name)) {
                     double x = Double.parseDouble(value);
                     double y = Double.parseDouble(st.nextToken());
                     double z = Double.parseDouble(st.nextToken());
-                    startingPoint_ = new Point(x, y, z);
+                    if (isSelected(originName)) {
+                        startingPoint_ = new Point(x, y, z);
+                    }
+                    unnamed |= null == originName;
                 } else if ("max_number_of_tunnels".equals(name)) {
                     maxNumberOfTunnels = Integer.parseInt(value);
                 } else if ("load_tunnels".equals(name)) {
@@ -436,8 +490,20 @@ public class CalculationSettings { // Calculation Settings
                     loadClusterTree = enabled(value);
                 } else if ("shell_radius".equals(name)) {
                     shellRadius = Double.parseDouble(value);
+                    configuredShellRadius = shellRadius;
                 } else if ("shell_depth".equals(name)) {
                     shellDepth = Double.parseDouble(value);
+                } else if ("probe_radius_sweep".equals(name)) {
+                    StringTokenizer ist = new StringTokenizer(rest, seps);
+                    while (ist.hasMoreTokens()) {
+                        String radius = ist.nextToken().trim();
+                        if (!(0 < Double.parseDouble(radius))
+                                || probeRadii_.contains(radius)) {
+                            throw new SettingsException("Radii must be "
+                                    + "positive and unique.");
+                        }
+                        probeRadii_.add(radius);
+                    }
                 } else if ("probe_radius".equals(name)) {
                     probeRadius = Double.parseDouble(value);
                 } else if ("max_output_clusters".equals(name)) {
@@ -602,6 +668,86 @@ public class CalculationSettings { // Calculation Settings
                     waypointCount = Integer.parseInt(value);
                 } else if ("admin".equals(name)) {
                     admin = enabled(value);
+                } else if ("triangulation_order".equals(name)) {
+                    if ("input".equals(value)) {
+                        triangulationOrder = TriangulationOrder.INPUT;
+                    } else if ("hilbert".equals(value)) {
+                        triangulationOrder = TriangulationOrder.HILBERT;
+                    } else if ("brio".equals(value)) {
+                        triangulationOrder = TriangulationOrder.BRIO;
+                    } else {
+                        throw new SettingsException("Only values input, "
+                                + "hilbert and brio are allowed.");
+                    }
+                } else if ("incremental_triangulation".equals(name)) {
+                    incrementalTriangulation = enabled(value);
+                } else if ("incremental_triangulation_max_invalid".equals(
+                        name)) {
+                    incrementalTriangulationMaxInvalid =
+                            Double.parseDouble(value);
+                    if (incrementalTriangulationMaxInvalid < 0
+                            || 1 < incrementalTriangulationMaxInvalid) {
+                        throw new SettingsException("Value must be between "
+                                + "0 and 1.");
+                    }
+                } else if ("parallel_triangulation_block_size".equals(name)) {
+                    parallelTriangulationBlockSize = Integer.parseInt(value);
+                    if (parallelTriangulationBlockSize < 0) {
+                        throw new SettingsException("Value must not be "
+                                + "negative.");
+                    }
+                } else if ("tunnel_computation".equals(name)) {
+                    if ("dijkstra".equals(value)) {
+                        tunnelComputation = TunnelComputationType.DIJKSTRA;
+                    } else if ("k_shortest_paths".equals(value)) {
+                        tunnelComputation =
+                                TunnelComputationType.K_SHORTEST_PATHS;
+                    } else {
+                        throw new SettingsException("Only values dijkstra "
+                                + "and k_shortest_paths are allowed.");
+                    }
+                } else if ("min_path_divergence".equals(name)) {
+                    minPathDivergence = Double.parseDouble(value);
+                    if (minPathDivergence < 0) {
+                        throw new SettingsException("Value must not be "
+                                + "negative.");
+                    }
+                } else if ("duplicate_path_divergence".equals(name)) {
+                    duplicatePathDivergence = Double.parseDouble(value);
+                    if (duplicatePathDivergence < 0) {
+                        throw new SettingsException("Value must not be "
+                                + "negative.");
+                    }
+                } else if ("bounded_tunnel_search".equals(name)) {
+                    boundedTunnelSearch = enabled(value);
+                } else if ("crop_radius".equals(name)) {
+                    cropRadius = Double.parseDouble(value);
+                    if (cropRadius < 0) {
+                        throw new SettingsException("Value must not be "
+                                + "negative.");
+                    }
+                } else if ("voronoi_cache_dir".equals(name)) {
+                    voronoiCacheDir = new File(value);
+                    if (!voronoiCacheDir.isDirectory()
+                            && !voronoiCacheDir.mkdirs()) {
+                        throw new SettingsException("Cannot create directory "
+                                + value + ".");
+                    }
+                } else if ("cost_function_integration".equals(name)) {
+                    if ("quadrature".equals(value)) {
+                        costFunctionQuadrature = true;
+                    } else if ("sampling".equals(value)) {
+                        costFunctionQuadrature = false;
+                    } else {
+                        throw new SettingsException("Only values quadrature "
+                                + "and sampling are allowed.");
+                    }
+                } else if ("number_of_threads".equals(name)) {
+                    numberOfThreads = Integer.parseInt(value);
+                    if (numberOfThreads < 1) {
+                        throw new SettingsException("Value must be greater "
+                                + "than zero.");
+                    }
                 } else if ("compute_bottleneck_residues".equals(name)) {
                     computeBottleneckResidues = enabled(value);
                 } else if ("exclude_residue_names".equals(name)) {
@@ -851,6 +997,21 @@ public class CalculationSettings { // Calculation Settings
         }
         br.close();
 
+        // diagrams are built for the smallest probe of the sweep, edges
+        // blocked for it are blocked for the greater ones too
+        if (!probeRadii_.isEmpty()) {
+            probeRadius = Double.POSITIVE_INFINITY;
+            for (String radius : probeRadii_) {
+                probeRadius = Math.min(probeRadius, Double.parseDouble(radius));
+            }
+        }
+
+        if (unnamed && !originNames_.isEmpty() && null == origin_) {
+            Logger.getLogger("caver").log(Level.WARNING, "Starting point "
+                    + "settings before the first starting_point_name in {0} "
+                    + "are ignored.", getConfigFile());
+        }
+
         if (null == seed_) {
             random = new Random();
             // TODO print seed, add parameter single seed to allow reproduction
@@ -867,8 +1028,10 @@ public class CalculationSettings { // Calculation Settings
             bottleneckHeatMapResolution = getProfileTunnelSamplingStep();
         }
 
-        passingFunction = new TimeCostFunction(
+        TimeCostFunction timeCostFunction = new TimeCostFunction(
                 costFunctionExponent, maxLimitingRadius, getMinCostFunctionRadius());
+        timeCostFunction.setQuadrature(costFunctionQuadrature);
+        passingFunction = timeCostFunction;
 
         passingFunction.printGraph();
         if (passingFunction.overflow(0.1)) {
@@ -1764,6 +1927,123 @@ public class CalculationSettings { // Calculation Settings
         return admin;
     }
 
+    public TriangulationOrder getTriangulationOrder() {
+        return triangulationOrder;
+    }
+
+    /*
+     * Triangulation of the previous snapshot is updated instead of
+     * triangulating from scratch.
+     */
+    public boolean isIncrementalTriangulation() {
+        return incrementalTriangulation;
+    }
+
+    /*
+     * Fraction of tetrahedrons which may become non Delaunay during an
+     * update, the triangulation is computed from scratch otherwise.
+     */
+    public double getIncrementalTriangulationMaxInvalid() {
+        return incrementalTriangulationMaxInvalid;
+    }
+
+    /*
+     * Number of points in blocks of space triangulated in parallel, zero if
+     * all points are triangulated at once.
+     */
+    public int getParallelTriangulationBlockSize() {
+        return parallelTriangulationBlockSize;
+    }
+
+    /*
+     * If only the max_number_of_tunnels cheapest paths of a frame are made
+     * into tunnels, the searches of more expensive paths are stopped early.
+     * Paths too short after their wide end is removed are not counted, but
+     * paths of tunnels shorter than min_tunnel_length are, so with
+     * min_tunnel_length fewer tunnels than max_number_of_tunnels may be
+     * kept.
+     */
+    public boolean boundedTunnelSearch() {
+        return boundedTunnelSearch;
+    }
+
+    /*
+     * tunnel_computation dijkstra (default) or k_shortest_paths. The latter
+     * is experimental: it enumerates at most 20 paths per tunnel and, with
+     * min_path_divergence, does not try deviations from the nodes inside of
+     * the tunnels found, so it can miss tunnels which dijkstra finds. It
+     * ignores waypoints.
+     */
+    public TunnelComputationType getTunnelComputation() {
+        return tunnelComputation;
+    }
+
+    /*
+     * Length of a path off the nodes of each cheaper tunnel needed for the
+     * path to be another tunnel, zero if it is not required.
+     */
+    public double getMinPathDivergence() {
+        return minPathDivergence;
+    }
+
+    /*
+     * Length of a path after leaving the nodes of cheaper paths of a frame
+     * needed to create its tunnel, zero if the tunnels of all paths are
+     * created.
+     */
+    public double getDuplicatePathDivergence() {
+        return duplicatePathDivergence;
+    }
+
+    public boolean cropStructure() {
+        return 0 < cropRadius;
+    }
+
+    /*
+     * Radius of the sphere around the starting point containing atoms which
+     * are triangulated. The layer outside crop_radius is wide enough for the
+     * outer shell probe to touch the surface and for the shell depth below
+     * it, so that the tunnel ends inside crop_radius are not affected. The
+     * shell_radius as configured is used, not the one chosen for a frame.
+     */
+    public double getCropRegionRadius() {
+        return cropRadius + 2 * configuredShellRadius + shellDepth;
+    }
+
+    /*
+     * Directory of the Voronoi diagrams saved before blocking for the probe,
+     * null if they are always computed.
+     */
+    public File getVoronoiCacheDir() {
+        return voronoiCacheDir;
+    }
+
+    /*
+     * Settings which determine the approximation of the atoms by spheres.
+     */
+    public String getApproximationKey() {
+        return "dissimilar_radius_tolerance " + dissimilarRadiusTolerance
+                + "\nnumber_of_approximating_balls " + balls
+                + "\nadd_central_sphere " + addCentralSphere
+                + "\nmax_shatter " + maxShatter
+                + "\nseed " + seed_;
+    }
+
+    public int getNumberOfThreads() {
+        return numberOfThreads;
+    }
+
+    /*
+     * Pool shared by all parallel parts of the calculation, created on the
+     * first use.
+     */
+    public synchronized ForkJoinPool getThreadPool() {
+        if (null == threadPool) {
+            threadPool = new ForkJoinPool(numberOfThreads);
+        }
+        return threadPool;
+    }
+
     public boolean computeBottleneckResidues() {
         return computeBottleneckResidues;
     }
@@ -2380,6 +2660,77 @@ public class CalculationSettings { // Calculation Settings
         return startingPoint_;
     }
 
+    /*
+     * Names of the starting points given by starting_point_name, in the
+     * order of the configuration, empty if the starting point is not named.
+     */
+    public List<String> getOriginNames() {
+        return originNames_;
+    }
+
+    /*
+     * Name of the starting point selected by these settings, null if it is
+     * not named.
+     */
+    public String getOriginName() {
+        return origin_;
+    }
+
+    /*
+     * Settings of the calculations searching the diagrams of these settings,
+     * one for each named starting point and each probe radius of the sweep,
+     * read from the same configuration. Their outputs are in subdirectories
+     * of the output directory, e.g. name/probe_0.9, the thread pool is
+     * shared. Empty if there is just one calculation.
+     */
+    public List<CalculationSettings> createCalculationSettings()
+            throws IOException, SettingsException {
+        List<CalculationSettings> list = new ArrayList<CalculationSettings>();
+        List<String> names = new ArrayList<String>(originNames_);
+        if (names.isEmpty()) {
+            names.add(null);
+        }
+        for (String name : names) {
+            File dir = null == name ? outDir_ : new File(outDir_, name);
+            if (probeRadii_.isEmpty()) {
+                if (null != name) {
+                    list.add(createSettings(dir, name, null));
+                }
+            } else {
+                for (String radius : probeRadii_) {
+                    list.add(createSettings(
+                            new File(dir, "probe_" + radius), name, radius));
+                }
+            }
+        }
+        return list;
+    }
+
+    private CalculationSettings createSettings(File dir, String origin,
+            String probeRadius) throws IOException, SettingsException {
+        dir.mkdirs();
+        CalculationSettings cs = new CalculationSettings();
+        cs.setBinDirectory(installationDir_);
+        cs.setPdbDir(pdbDir_);
+        cs.setConfigFiles(cf_, acf_);
+        cs.setOutputDirectory(dir);
+        cs.origin_ = origin;
+        cs.threadPool = getThreadPool();
+        cs.readFile();
+        if (null != probeRadius) {
+            cs.probeRadius = Double.parseDouble(probeRadius);
+            cs.probeRadii_.clear();
+        }
+        return cs;
+    }
+
+    private boolean isSelected(String origin) {
+        if (null == origin) {
+            return null == origin_;
+        }
+        return origin.equals(origin_);
+    }
+
     public Set<Integer> getStartingAtoms() {
         return startingAtoms_;
 
@@ -20,13 +20,27 @@ public class Clock {
     private static SortedMap<String, Long> starts = new TreeMap<String, Long>();
     private static SortedMap<String, Long> stops = new TreeMap<String, Long>();
     private static SortedMap<String, Long> sums = new TreeMap<String, Long>();
+    private static ThreadLocal<String> scope = new ThreadLocal<String>();
 
-    public static void start(String s) {
-        starts.put(s, System.nanoTime());
+    /*
+     * Times started and stopped by this thread are kept under keys prefixed
+     * by the scope, if it is not null, so that concurrent calculations are
+     * timed separately. Returns the previous scope, which is to be restored
+     * when the calculation ends.
+     */
+    public static String scope(String prefix) {
+        String previous = scope.get();
+        scope.set(prefix);
+        return previous;
     }
 
-    public static void stop(String s) {
+    public static synchronized void start(String s) {
+        starts.put(key(s), System.nanoTime());
+    }
+
+    public static synchronized void stop(String s) {
         long stop = System.nanoTime();
+        s = key(s);
         stops.put(s, stop);
 
         long dt = stop - starts.get(s);
@@ -37,7 +51,7 @@ public class Clock {
         }
     }
 
-    public static void print(BufferedWriter bw) {
+    public static synchronized void print(BufferedWriter bw) {
         try {
             long max = Long.MIN_VALUE;
             for (String key : starts.keySet()) {
@@ -67,6 +81,10 @@ public class Clock {
         }
     }
 
+    private static String key(String s) {
+        return null == scope.get() ? s : scope.get() + ": " + s;
+    }
+
     public static String nanoToMili(long nano) {
         return (nano / 1000000) + "." + (nano % 1000000);
     }
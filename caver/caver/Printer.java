@@ -25,11 +25,13 @@ public class Printer {
     private static File file_;
     private static List<String> suggestions = new ArrayList<String>();
     // storage of advises and suggestions for a user
+    private static ThreadLocal<StringBuilder> buffer =
+            new ThreadLocal<StringBuilder>(); // of the thread, null if none
 
     /*
      * Processes an advise or a suggestion for a user.
      */
-    public static void suggests(String what) {
+    public static synchronized void suggests(String what) {
         suggestions.add(what);
     }
 
@@ -66,20 +68,50 @@ public class Printer {
         out = p;
     }
 
-    public static void print(String s) {
+    public static synchronized void print(String s) {
 
         if (out()) {
-            System.out.print(s);
-            if (null != file_) {
-                try {
-                    BufferedWriter bw = new BufferedWriter(new FileWriter(file_,
-                            true));
-                    bw.write(s);
-                    bw.close();
-                } catch (IOException e) {
-                    Logger.getLogger("caver").log(
-                            Level.WARNING, "Log file error.", e);
-                }
+            if (null != buffer.get()) {
+                buffer.get().append(s);
+            } else {
+                write(s);
+            }
+        }
+    }
+
+    /*
+     * Messages printed by this thread are kept in the buffer, if it is not
+     * null, instead of being written. Returns the previous buffer, which is
+     * to be restored when the calculation printing to the buffer ends.
+     * Concurrent calculations are printed in a fixed order this way.
+     */
+    public static StringBuilder redirect(StringBuilder b) {
+        StringBuilder previous = buffer.get();
+        buffer.set(b);
+        return previous;
+    }
+
+    /*
+     * Writes the messages kept in the buffer.
+     */
+    public static synchronized void flush(StringBuilder b) {
+        if (0 < b.length()) {
+            write(b.toString());
+        }
+        b.setLength(0);
+    }
+
+    private static void write(String s) {
+        System.out.print(s);
+        if (null != file_) {
+            try {
+                BufferedWriter bw = new BufferedWriter(new FileWriter(file_,
+                        true));
+                bw.write(s);
+                bw.close();
+            } catch (IOException e) {
+                Logger.getLogger("caver").log(
+                        Level.WARNING, "Log file error.", e);
             }
         }
     }
@@ -106,7 +138,7 @@ public class Printer {
         print(s + "\n");
     }
 
-    public static void println(String s, int level) {
+    public static synchronized void println(String s, int level) {
         listenOnce(level);
         print(s + "\n");
     }
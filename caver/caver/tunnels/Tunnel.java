@@ -1,8 +1,10 @@
 package caver.tunnels;
 
 import algorithms.clustering.Cluster;
+import algorithms.search.PathBuffer;
 import algorithms.triangulation.TVE;
 import algorithms.triangulation.VE;
+import algorithms.triangulation.VoronoiDiagram;
 import caver.CalculationSettings;
 import caver.Clock;
 import caver.Printer;
@@ -51,9 +53,12 @@ public class Tunnel implements Serializable, Comparable<Tunnel> {
     private transient double bottleneckError_;
     private transient CalculationSettings cs_;
 
+    /*
+     * Creates the tunnel of the path of the buffer, from the start to the
+     * surface, without the edges at the surface wider than endR.
+     */
     public static Tunnel create(Point source, SnapId snap, int id,
-            List<VE> edges, List<Integer> nodes,
-            double cost,
+            VoronoiDiagram vd, PathBuffer paths, int path,
             double endR,
             double mainSamplingStep, CalculationSettings cs) {
         Tunnel t = new Tunnel();
@@ -61,25 +66,14 @@ public class Tunnel implements Serializable, Comparable<Tunnel> {
         t.source_ = source;
         t.snap_ = snap;
         t.id_ = id;
-        t.cost_ = cost;
-
-        List<VE> edgesList = new ArrayList<VE>();
+        t.cost_ = paths.getCost(path);
 
-        int lastEdge = 0;
-        boolean broke = false;
+        // edge i leads from node i + 1 to node i of the path
+        int edges = paths.getLength(path) - 1;
 
-        // remove too wide edges from end
-        // approximative, may get inside through extremly long edge
-        for (int i = 0; i < edges.size(); i++) {
-            VE e = edges.get(i);
-            if (e.getBottleneck().getR() <= endR
-                    || e.getARadius() <= endR || e.getBRadius() <= endR) {
-                lastEdge = i; // this edge has part thin enough
-                broke = true;
-                break;
-            }
-        }
-        if (!broke) {
+        int lastEdge = firstThinEdge(vd, paths, path, endR);
+        if (lastEdge < 0) {
+            lastEdge = 0;
             Logger.getLogger("caver").log(Level.WARNING,
                     "Whole tunnel is wider than {0}"
                     + ", big end spheres were not removed"
@@ -88,45 +82,24 @@ public class Tunnel implements Serializable, Comparable<Tunnel> {
                     new Object[]{endR, endR});
         }
 
-        if (2 <= edges.size() && lastEdge < edges.size() - 2) {
-
-            VE e1 = edges.get(edges.size() - 1);
-            VE e2 = edges.get(edges.size() - 2);
-
-            // orient first element
-            if (e1.getNodeA() == e2.getNodeA()
-                    || e1.getNodeA() == e2.getNodeB()) {
-                edgesList.add(e1.flip());
-            } else {
-                edgesList.add(e1);
-            }
-
-            for (int i = edges.size() - 2; lastEdge <= i; i--) {
-                VE e = edgesList.get(edgesList.size() - 1); // really _, last added
-                VE f = edges.get(i);
-
-                if (e.getNodeB() == f.getNodeA()) {
-                    edgesList.add(f);
-                } else {
-                    edgesList.add(f.flip());
-                }
-            }
-        } else {
+        if (!(2 <= edges && lastEdge < edges - 2)) {
             return null;
         }
 
-        for (VE e : edgesList) {
+        // orient edges from the start
+        t.edges_ = new TVE[edges - lastEdge];
+        for (int i = edges - 1; lastEdge <= i; i--) {
+            int a = paths.getNode(path, i + 1);
+            VE e = vd.getSegmentByNodes(a, paths.getNode(path, i));
+            if (e.getNodeA() != a) {
+                e = e.flip();
+            }
             Sphere s = e.getBottleneck();
             if (null == t.bottleneck_
                     || s.getR() < t.bottleneck_.getR()) {
                 t.bottleneck_ = s;
             }
-        }
-
-        t.edges_ = new TVE[edgesList.size()];
-
-        for (int i = 0; i < t.edges_.length; i++) {
-            t.edges_[i] = new TVE(edgesList.get(i));
+            t.edges_[edges - 1 - i] = new TVE(e);
         }
 
         List<Sphere> profile = t.computeProfile(cs.getProfileTunnelSamplingStep());
@@ -140,6 +113,35 @@ public class Tunnel implements Serializable, Comparable<Tunnel> {
         }
     }
 
+    /*
+     * Is the path too short for a tunnel after the edges at the surface wider
+     * than endR are removed? The tunnel may still be rejected as shorter than
+     * min_tunnel_length, that is known only after its profile is computed.
+     */
+    public static boolean isTrimmedAway(VoronoiDiagram vd, PathBuffer paths,
+            int path, double endR) {
+        int edges = paths.getLength(path) - 1;
+        int lastEdge = Math.max(0, firstThinEdge(vd, paths, path, endR));
+        return !(2 <= edges && lastEdge < edges - 2);
+    }
+
+    /*
+     * First edge from the surface with a part thinner than endR, -1 if there
+     * is none. Approximative, may get inside through extremly long edge.
+     */
+    private static int firstThinEdge(VoronoiDiagram vd, PathBuffer paths,
+            int path, double endR) {
+        for (int i = 0; i < paths.getLength(path) - 1; i++) {
+            VE e = vd.getSegmentByNodes(paths.getNode(path, i),
+                    paths.getNode(path, i + 1));
+            if (e.getBottleneck().getR() <= endR
+                    || e.getARadius() <= endR || e.getBRadius() <= endR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private void computeProfileRelatedValues(List<Sphere> profile) {
 
         length_ = 0;
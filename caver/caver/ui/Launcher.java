@@ -9,8 +9,10 @@ import algorithms.clustering.layers.LayeredTunnels;
 import algorithms.search.DijkstraTunnelComputation;
 import algorithms.search.TunnelComputation;
 import algorithms.search.Voids;
+import algorithms.search.YenTunnelComputation;
 import algorithms.triangulation.SphereSpaceTriangulator;
 import algorithms.triangulation.VoronoiDiagram;
+import algorithms.triangulation.VoronoiGeometry;
 import caver.CalculationSettings;
 import caver.Clock;
 import caver.Printer;
@@ -28,7 +30,10 @@ import geometry.primitives.NumberedSphere;
 import geometry.primitives.Point;
 import geometry.primitives.Sphere;
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Formatter;
 import java.util.logging.*;
 
@@ -39,6 +44,12 @@ public class Launcher {
 
     private CalculationSettings cs_;
     private int after, before;
+    // kept over snapshots to update the triangulation incrementally
+    private SphereSpaceTriangulator triangulator_;
+    // calculations from the named starting points or with the probe radii of
+    // the sweep, searching the diagrams of this one
+    private List<Launcher> targets_ = new ArrayList<Launcher>();
+    private CaverCounter counter_; // of tunnels
 
     public Launcher(CalculationSettings settings) {
         this.cs_ = settings;
@@ -111,29 +122,16 @@ public class Launcher {
                 + cs_.getFrameClusteringThreshold(),
                 Printer.NORMAL);
 
-        Printer.println("", Printer.NORMAL);
-
-        File[] tunnelFiles = cs_.getTunnelsDir().listFiles();
-
+        for (String name : cs_.getOriginNames()) {
+            Printer.println("starting_point_name " + name, Printer.NORMAL);
+        }
 
+        Printer.println("", Printer.NORMAL);
 
-        if (cs_.protectTunnelsIfMoreSnapshotsThan() < tunnelFiles.length) {
-            throw new CalculationException("Directory " + cs_.getTunnelsDir()
-                    + " contains computed tunnels from " + tunnelFiles.length
-                    + " snapshots. If you really want to compute all tunnels "
-                    + "again, please delete it manually. I do not dare to "
-                    + "delete result of so long computation. "
-                    + "If you wanted to continue work with those tunnels, "
-                    + "set 'load_tunnels' to 'yes' in config.txt.");
-        } else {
-            cs_.cleanDirectory(cs_.getTunnelsDir());
-            cs_.cleanDirectory(cs_.getEdgesDir());
+        for (Launcher l : getTargets()) {
+            l.clearTunnels();
         }
-        cs_.getCorridorFile().delete();
-        cs_.getVoidFile().delete();
-        cs_.getVoidFilePrecursor().delete();
 
-        CaverCounter counter = new CaverCounter(1);
         for (SnapId snap : files.keySet()) {
             try {
 
@@ -155,20 +153,66 @@ public class Launcher {
 
 
 
-                Clock.start("approximate and shatter");
-                List<Sphere> shattered = shatter(ms.getSpheresOneRadiiApproximation(
-                        cs_.getDissimilarRadiusTolerance(),
-                        cs_.getNumberOfSpheres(),
-                        cs_.addCentralSphere(),
-                        cs_.getRandom()));
-                if (cs_.saveApproximation() && cs_.isAdmin()) {
-                    PdbUtil.saveSpheres(shattered, cs_.getApproximationFile(file));
+                Point start = null;
+                if (cs_.getOriginNames().isEmpty()) {
+                    start = cs_.createStartingPoint(pfp);
+                }
+
+                Sphere region = null;
+                if (cs_.cropStructure()) {
+                    if (null == start) {
+                        Logger.getLogger("caver").warning("Structure is not "
+                                + "cropped, crop_radius requires a single "
+                                + "starting point specified in the "
+                                + "configuration.");
+                    } else {
+                        region = new Sphere(start, cs_.getCropRegionRadius());
+                        Printer.println("Cropping structure to radius "
+                                + region.getR() + " around starting point.");
+                    }
+                }
+
+                VoronoiGeometry geometry = null;
+                File cached = null;
+                if (null != cs_.getVoronoiCacheDir()) {
+                    cached = new File(cs_.getVoronoiCacheDir(),
+                            voronoiCacheKey(file, ms, region) + ".vd");
+                    if (cached.exists()) {
+                        geometry = VoronoiGeometry.load(cached);
+                    }
+                    if (null != geometry) {
+                        Printer.println("Voronoi diagram loaded from "
+                                + cached);
+                    }
+                }
+
+                if (null == geometry) {
+                    Clock.start("approximate and shatter");
+                    List<Sphere> shattered = shatter(
+                            ms.getSpheresOneRadiiApproximation(
+                            cs_.getDissimilarRadiusTolerance(),
+                            cs_.getNumberOfSpheres(),
+                            cs_.addCentralSphere(),
+                            cs_.getRandom(), region));
+                    if (cs_.saveApproximation() && cs_.isAdmin()) {
+                        PdbUtil.saveSpheres(shattered,
+                                cs_.getApproximationFile(file));
+                    }
+                    Clock.stop("approximate and shatter");
+
+                    Clock.start("Voronoi Diagram construction");
+                    geometry = constructVoronoiGeometry(shattered);
+                    shattered = null;
+                    Clock.stop("Voronoi Diagram construction");
+                    if (null != cached) {
+                        geometry.save(cached);
+                    }
                 }
 
-                Clock.stop("approximate and shatter");
                 Clock.start("Voronoi Diagram construction");
-                VoronoiDiagram vd = constructVoronoiDiagram(shattered);
-                shattered = null;
+                VoronoiDiagram vd = getTriangulator().createDiagram(geometry);
+                geometry = null;
+                Printer.println("Vertices in Voronoi diagram: " + vd.size());
                 Clock.stop("Voronoi Diagram construction");
 
                 if (false) {
@@ -179,95 +223,210 @@ public class Launcher {
                 if (cs_.doVoids()) {
                     Printer.println("Automaticed geometric idenfication of "
                             + "starting point.");
+                    Clock.start("voids");
                     Voids voids = new Voids(vd);
-                    voids.run();
+                    voids.run(cs_.getThreadPool());
+                    Clock.stop("voids");
                     startGuess = voids.getClosest(ms.getCenter(), 1.4);
                     //voids.save(cs_);
                     //voids.savePoints(cs_.getDeepPointsFile());
                 }
 
-                Point start = cs_.createStartingPoint(pfp);
-                if (null == start) {
-                    if (null != startGuess) {
-                        start = startGuess;
-                    } else {
-                        throw new RuntimeException("No starting point specified "
-                                + "in " + cs_.getConfigFile());
-                    }
+                if (targets_.isEmpty()) {
+                    computeTunnels(vd, ms, pfp, snap, start, startGuess);
+                } else {
+                    computeTargetTunnels(vd, ms, pfp, snap, file,
+                            startGuess);
                 }
+            } catch (Exception e) {
+                Logger.getLogger("caver").log(
+                        Level.SEVERE, "computeTunnels()", e);
+            }
+        }
+        Printer.println("", Printer.NORMAL);
+        for (Launcher l : getTargets()) {
+            if (l.cs_.generateVoronoi() && l.cs_.isAdmin()) {
+                PdbUtil.finalizeFile(PdbUtil.Visualizer.PyMOL,
+                        l.cs_.getVoidFilePrecursor(), l.cs_.getVoidFile());
+            }
+        }
+    }
 
-                TunnelComputation tc = new DijkstraTunnelComputation();
+    /*
+     * Computes, removes redundant and saves tunnels of the snapshot from the
+     * starting point, or from startGuess if start is null.
+     */
+    private void computeTunnels(VoronoiDiagram vd, MolecularSystem ms,
+            PdbFileProcessor pfp, SnapId snap, Point start, Point startGuess)
+            throws IOException, CalculationException {
+        if (null == start) {
+            if (null != startGuess) {
+                start = startGuess;
+            } else {
+                throw new RuntimeException("No starting point specified "
+                        + "in " + cs_.getConfigFile());
+            }
+        }
 
+        TunnelComputation tc;
+        if (CalculationSettings.TunnelComputationType.K_SHORTEST_PATHS
+                == cs_.getTunnelComputation()) {
+            tc = new YenTunnelComputation();
+        } else {
+            tc = new DijkstraTunnelComputation();
+        }
 
-                Clock.start("compute tunnels");
 
-                Tunnels tunnels;
-                if (cs_.getWaypointCount() <= 1) {
-                    tunnels = tc.computeTunnelsBlock(cs_, vd, start,
-                            SnapId.create(pfp.getFile()), counter);
+        Clock.start("compute tunnels");
 
-                } else {
-                    double proteinR = ms.getProteinRadius(start);
-                    Printer.println("Protein radius: " + proteinR);
-                    tunnels = tc.computeTunnels(cs_, vd, start, proteinR,
-                            SnapId.create(pfp.getFile()), counter);
-                }
+        Tunnels tunnels;
+        if (cs_.getWaypointCount() <= 1) {
+            tunnels = tc.computeTunnelsBlock(cs_, vd, start,
+                    SnapId.create(pfp.getFile()), counter_);
 
-                if (cs_.isAdmin()) {
-                    vd.saveTree(cs_.getCorridorFile());
-                    vd.saveVoid(cs_.getVoidFilePrecursor(), snap);
-                }
-                int total = tunnels.size();
-                Clock.stop("compute tunnels");
+        } else {
+            double proteinR = ms.getProteinRadius(start);
+            Printer.println("Protein radius: " + proteinR);
+            tunnels = tc.computeTunnels(cs_, vd, start, proteinR,
+                    SnapId.create(pfp.getFile()), counter_);
+        }
 
-                Printer.println(tunnels.size() + " tunnels found in "
-                        + snap);
+        if (cs_.isAdmin()) {
+            vd.saveTree(cs_.getCorridorFile(), tc.getSearchTables());
+            vd.saveVoid(cs_.getVoidFilePrecursor(), snap,
+                    tc.getSearchTables());
+        }
+        int total = tunnels.size();
+        Clock.stop("compute tunnels");
 
-                if (cs_.doFrameClustering()) {
-                    Clock.start("redundant tunnels removal (frame clustering)");
+        Printer.println(tunnels.size() + " tunnels found in "
+                + snap);
 
-                    List<Tunnel> ts = tunnels.getTunnels();
-                    AverageSurface surface = null;
-                    if (cs_.doAverageSurfaceFrame()) {
-                        surface = new AverageSurface(
-                                ts, tunnels.getVoronoiOrigin(), cs_);
-                    }
-                    LayeredTunnels lts = new LayeredTunnels(
-                            tunnels.getVoronoiOrigin(),
-                            surface, ts, // just tunnels for exact clutering
-                            false, cs_.doAverageSurfaceFrame(),
-                            cs_.getFrameLayersSettings(), cs_);
-
-                    tunnels.cluster(lts, cs_);
-                    Printer.println((total - tunnels.size())
-                            + " redundant tunnels removed.", Printer.NORMAL);
-                    Clock.stop("redundant tunnels removal (frame clustering)");
-                }
+        if (cs_.doFrameClustering()) {
+            Clock.start("redundant tunnels removal (frame clustering)");
 
-                int out = tunnels.filter(cs_.getMaxNumberOfTunnels());
-                if (0 < out) {
-                    Printer.println(out + " tunnels removed because of "
-                            + "number_of_tunnels parameter.", Printer.NORMAL);
-                }
+            List<Tunnel> ts = tunnels.getTunnels();
+            AverageSurface surface = null;
+            if (cs_.doAverageSurfaceFrame()) {
+                surface = new AverageSurface(
+                        ts, tunnels.getVoronoiOrigin(), cs_);
+            }
+            LayeredTunnels lts = new LayeredTunnels(
+                    tunnels.getVoronoiOrigin(),
+                    surface, ts, // just tunnels for exact clutering
+                    false, cs_.doAverageSurfaceFrame(),
+                    cs_.getFrameLayersSettings(), cs_);
+
+            tunnels.cluster(lts, cs_);
+            Printer.println((total - tunnels.size())
+                    + " redundant tunnels removed.", Printer.NORMAL);
+            Clock.stop("redundant tunnels removal (frame clustering)");
+        }
 
-                Printer.println(tunnels.size() + " tunnels stored.",
-                        Printer.NORMAL);
-                tunnels.assignPriorities(); // provisional, tunnels disapears also lower
+        int out = tunnels.filter(cs_.getMaxNumberOfTunnels());
+        if (0 < out) {
+            Printer.println(out + " tunnels removed because of "
+                    + "number_of_tunnels parameter.", Printer.NORMAL);
+        }
 
+        Printer.println(tunnels.size() + " tunnels stored.",
+                Printer.NORMAL);
+        tunnels.assignPriorities(); // provisional, tunnels disapears also lower
 
+        tunnels.save(snap, cs_);
+    }
 
+    /*
+     * Tunnels of the calculations from the named starting points and with
+     * the probe radii of the sweep are computed concurrently, each in its own
+     * copy of disabled and outer nodes of the diagram. The diagram is built
+     * for the smallest probe, greater probes do not pass the edges narrower
+     * than them. The widest paths to the hull and the nodes with their radii
+     * are shared, so starting points and outer shells are found without
+     * repeated searches of the whole diagram. Each calculation is timed
+     * under the name of its output directory and its messages are printed
+     * after all of them end, in their order. The tasks forked by a
+     * calculation neither time nor print, they may run in another thread.
+     */
+    private void computeTargetTunnels(VoronoiDiagram vd,
+            final MolecularSystem ms, final PdbFileProcessor pfp,
+            final SnapId snap, File file, final Point startGuess) {
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        final StringBuilder[] messages = new StringBuilder[targets_.size()];
+        for (int i = 0; i < targets_.size(); i++) {
+            final Launcher target = targets_.get(i);
+            target.cs_.initRandom(deriveNumber(file.getName()));
+            final Point start = target.cs_.createStartingPoint(pfp);
+            final VoronoiDiagram copy = vd.share();
+            final StringBuilder buffer = new StringBuilder();
+            messages[i] = buffer;
+            tasks.add(new RecursiveAction() {
+
+                @Override
+                protected void compute() {
+                    // restored, the task may run inside of a join of another
+                    String scope = Clock.scope(
+                            target.cs_.getOutputDirectory().getName());
+                    StringBuilder previous = Printer.redirect(buffer);
+                    try {
+                        target.computeTunnels(copy, ms, pfp, snap, start,
+                                startGuess);
+                    } catch (Exception e) {
+                        Logger.getLogger("caver").log(Level.SEVERE,
+                                "computeTunnels() for "
+                                + target.cs_.getOutputDirectory(), e);
+                    } finally {
+                        Printer.redirect(previous);
+                        Clock.scope(scope);
+                    }
+                }
+            });
+        }
+        cs_.getThreadPool().invoke(new RecursiveAction() {
 
-                tunnels.save(snap, cs_);
-            } catch (Exception e) {
-                Logger.getLogger("caver").log(
-                        Level.SEVERE, "computeTunnels()", e);
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
             }
+        });
+        for (StringBuilder b : messages) {
+            Printer.flush(b);
         }
-        Printer.println("", Printer.NORMAL);
-        if (cs_.generateVoronoi() && cs_.isAdmin()) {
-            PdbUtil.finalizeFile(PdbUtil.Visualizer.PyMOL,
-                    cs_.getVoidFilePrecursor(), cs_.getVoidFile());
+    }
+
+    /*
+     * Deletes tunnels of the previous calculation.
+     */
+    private void clearTunnels() throws CalculationException {
+        File[] tunnelFiles = cs_.getTunnelsDir().listFiles();
+
+        if (cs_.protectTunnelsIfMoreSnapshotsThan() < tunnelFiles.length) {
+            throw new CalculationException("Directory " + cs_.getTunnelsDir()
+                    + " contains computed tunnels from " + tunnelFiles.length
+                    + " snapshots. If you really want to compute all tunnels "
+                    + "again, please delete it manually. I do not dare to "
+                    + "delete result of so long computation. "
+                    + "If you wanted to continue work with those tunnels, "
+                    + "set 'load_tunnels' to 'yes' in config.txt.");
+        } else {
+            cs_.cleanDirectory(cs_.getTunnelsDir());
+            cs_.cleanDirectory(cs_.getEdgesDir());
+        }
+        cs_.getCorridorFile().delete();
+        cs_.getVoidFile().delete();
+        cs_.getVoidFilePrecursor().delete();
+        counter_ = new CaverCounter(1);
+    }
+
+    /*
+     * Calculations of this launcher, the ones from the named starting points
+     * if there are any.
+     */
+    private List<Launcher> getTargets() {
+        if (targets_.isEmpty()) {
+            return Collections.singletonList(this);
         }
+        return targets_;
     }
 
     private void printTransformationTable() {
@@ -960,8 +1119,17 @@ public class Launcher {
         return true;
     }
 
+    /*
+     * Randomly moves sphere centers by at most max_shatter in each
+     * coordinate. Not needed for the triangulation, which resolves
+     * degenerate positions exactly, so zero (default) disables it.
+     */
     public List<Sphere> shatter(List<Sphere> spheres) {
 
+        if (cs_.getMaxShatter() <= 0) {
+            return spheres;
+        }
+
         Logger.getLogger("caver").log(Level.FINE, "Shattering {0} spheres.",
                 spheres.size());
 
@@ -988,10 +1156,17 @@ public class Launcher {
         return ss;
     }
 
+    public VoronoiDiagram constructVoronoiDiagram(List<Sphere> spheres) {
+        VoronoiDiagram vd = getTriangulator().createDiagram(
+                constructVoronoiGeometry(spheres));
+        Printer.println("Vertices in Voronoi diagram: " + vd.size());
+        return vd;
+    }
+
     /*
-     * Solves non-general positions by ranodm shattering of coordinates.
+     * Voronoi diagram of the spheres before blocking for the probe.
      */
-    public VoronoiDiagram constructVoronoiDiagram(List<Sphere> spheres) {
+    public VoronoiGeometry constructVoronoiGeometry(List<Sphere> spheres) {
 
         SortedMap<Integer, NumberedSphere> numbered =
                 new TreeMap<Integer, NumberedSphere>();
@@ -1001,12 +1176,62 @@ public class Launcher {
                     i, s.getS(), s.getR()));
         }
 
-        SphereSpaceTriangulator pt = new SphereSpaceTriangulator(cs_);
-        VoronoiDiagram vd = pt.triangulate(numbered);
+        Clock.start("voronoi diagram construction: procedure");
+        VoronoiGeometry geometry = getTriangulator().computeGeometry(numbered);
+        Clock.stop("voronoi diagram construction: procedure");
 
         Printer.println("Spheres in approximated system: " + spheres.size());
-        Printer.println("Vertices in Voronoi diagram: " + vd.size());
-        return vd;
+        return geometry;
+    }
+
+    private SphereSpaceTriangulator getTriangulator() {
+        if (null == triangulator_) {
+            triangulator_ = new SphereSpaceTriangulator(cs_);
+        }
+        return triangulator_;
+    }
+
+    /*
+     * Name of the cached Voronoi diagram, a digest of the PDB file, the atoms
+     * and settings which determine the approximation and the triangulation.
+     */
+    private String voronoiCacheKey(File file, MolecularSystem ms,
+            Sphere region) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while (0 < (n = in.read(buffer))) {
+                md.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(file.getName()).append('\n');
+        sb.append(cs_.getApproximationKey()).append('\n');
+        // the order of triangulation changes the numbering of nodes
+        sb.append("triangulation_order ").append(cs_.getTriangulationOrder())
+                .append('\n');
+        sb.append("parallel_triangulation_block_size ")
+                .append(cs_.getParallelTriangulationBlockSize()).append('\n');
+        sb.append(region).append('\n');
+        for (Sphere s : ms.getSpheres()) {
+            sb.append(s).append('\n');
+        }
+        md.update(sb.toString().getBytes("UTF-8"));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : md.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
     }
 
     /*
@@ -1045,18 +1270,29 @@ public class Launcher {
         }
 
 
-        if (cs_.generateTrajectory()) {
-            Printer.println("Merging all PDB files into one multimodel PDB file.",
-                    Printer.NORMAL);
-            mergePdbFiles(files);
+        try {
+            for (CalculationSettings cs : cs_.createCalculationSettings()) {
+                targets_.add(new Launcher(cs));
+            }
+        } catch (SettingsException e) { // read before without errors
+            throw new RuntimeException(e);
         }
 
         Iterator<SnapId> it = files.keySet().iterator();
         for (int i = 0; i < files.size() / 2; i++) {
             it.next();
         }
+        File representant = files.get(it.next());
 
-        cs_.copyPdbRepresentant(files.get(it.next()));
+        for (Launcher l : getTargets()) {
+            if (l.cs_.generateTrajectory()) {
+                Printer.println("Merging all PDB files into one multimodel "
+                        + "PDB file.", Printer.NORMAL);
+                l.mergePdbFiles(files);
+            }
+
+            l.cs_.copyPdbRepresentant(representant);
+        }
 
         if (!cs_.loadTunnels()) {
 
@@ -1068,11 +1304,36 @@ public class Launcher {
             return;
         }
 
+        for (Launcher l : getTargets()) {
+            if (l != this) {
+                Printer.println("*** Results in " + l.cs_.getOutputDirectory()
+                        + " ***", Printer.NORMAL);
+            }
+            if (!l.analyze(files)) {
+                return;
+            }
+        }
+
+        Clock.stop("all");
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(cs_.getTimesFile()));
+        Clock.print(bw);
+        bw.close();
+
+
+    }
+
+    /*
+     * Clusters the tunnels and outputs the analyses, false if the calculation
+     * stops after the cluster tree.
+     */
+    private boolean analyze(SortedMap<SnapId, File> files)
+            throws IOException, CalculationException {
         Clock.start("cluster tunnels");
         Clusters clusters = cluster(files);
         if (cs_.stopAfterClusterTree()) {
             // also cluster(files) ended prematurely
-            return;
+            return false;
         }
         Clock.stop("cluster tunnels");
 
@@ -1092,13 +1353,7 @@ public class Launcher {
         }
 
         Clock.stop("output analyses");
-        Clock.stop("all");
-
-        BufferedWriter bw = new BufferedWriter(new FileWriter(cs_.getTimesFile()));
-        Clock.print(bw);
-        bw.close();
-
-
+        return true;
     }
 
     public void run() throws IOException, CalculationException {
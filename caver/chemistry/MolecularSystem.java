@@ -227,10 +227,26 @@ public class MolecularSystem {
     public List<Sphere> getSpheresOneRadiiApproximation(
             double tolerableRadiusIncrease, int n, boolean central,
             Random random) {
+        return getSpheresOneRadiiApproximation(tolerableRadiusIncrease, n,
+                central, random, null);
+    }
+
+    /*
+     * Only atoms intersecting the region are approximated, all atoms if the
+     * region is null.
+     */
+    public List<Sphere> getSpheresOneRadiiApproximation(
+            double tolerableRadiusIncrease, int n, boolean central,
+            Random random, Sphere region) {
 
         List<Sphere> spheres = new ArrayList<Sphere>();
         for (Atom a : atoms.values()) {
 
+            if (null != region
+                    && a.getRadius() < region.distance(a.getCenter())) {
+                continue;
+            }
+
             if (minRadius * tolerableRadiusIncrease < a.getRadius()) {
 
                 Sphere as = new Sphere(a.getCenter(), a.getRadius());